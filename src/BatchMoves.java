@@ -0,0 +1,234 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+public class BatchMoves {
+    private static final String VECTOR_CLASS = "vector.VectorBatchMoves";
+    private static final MethodHandle VECTOR_MOVES;  // null when the Vector API or its kernels are missing
+    private static final MethodHandle VECTOR_FLIPS;
+    private static final int VECTOR_LANES;
+
+    static {
+        MethodHandle moves = null;
+        MethodHandle flips = null;
+        int lanes = 1;
+        try {
+            Class<?> kernels = Class.forName(VECTOR_CLASS);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            lanes = (int) lookup.findStatic(kernels, "lanes", MethodType.methodType(int.class)).invokeExact();
+            moves = lookup.findStatic(kernels, "generateMoves",
+                    MethodType.methodType(void.class, long[].class, long[].class, long[].class, int.class));
+            flips = lookup.findStatic(kernels, "computeFlips",
+                    MethodType.methodType(void.class, long[].class, long[].class, long[].class, long[].class, int.class));
+        } catch (Throwable e) {
+            // not compiled in, or the JVM was started without --add-modules jdk.incubator.vector
+            moves = null;
+            flips = null;
+        }
+        // with a single lane the Vector API only adds overhead to the plain code
+        boolean useful = moves != null && lanes > 1;
+        VECTOR_MOVES = useful ? moves : null;
+        VECTOR_FLIPS = useful ? flips : null;
+        VECTOR_LANES = useful ? lanes : 1;
+    }
+
+    private final boolean vector;
+
+    /**
+     * Describes move generation for many positions at once. Positions are given as separate arrays
+     * of own and opponent discs, position i being own[i] and opp[i], so a batch is a few flat arrays.
+     * With the Vector API available each instruction handles several positions, otherwise
+     * the batch is run through the same shifts as BitBoard one position at a time.
+     * @param useVector false to always use the plain code, for comparing the two
+     */
+    public BatchMoves(boolean useVector) {
+        vector = useVector && VECTOR_MOVES != null;
+    }
+
+    /**
+     * check if SIMD kernels can be used in this JVM
+     * @return true when the vector kernels are on the class path and jdk.incubator.vector is loaded
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR_MOVES != null;
+    }
+
+    /**
+     * get how many positions are handled at once
+     * @return vector lanes, 1 for the plain code
+     */
+    public int getLanes() {
+        return vector ? VECTOR_LANES : 1;
+    }
+
+    /**
+     * get every valid move of count positions
+     * @param own discs of the player to move, per position
+     * @param opp discs of the other player, per position
+     * @param moves filled with the mask of valid moves of each position
+     * @param count number of positions, from index 0
+     */
+    public void generateMoves(long[] own, long[] opp, long[] moves, int count) {
+        if (vector) {
+            try {
+                VECTOR_MOVES.invokeExact(own, opp, moves, count);
+            } catch (Throwable e) {
+                throw new IllegalStateException("vector move generation failed", e);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            moves[i] = BitBoard.generateMoves(own[i], opp[i]);
+        }
+    }
+
+    /**
+     * get the discs one move flips in each of count positions
+     * @param move mask with the single square played in each position, 0 flips nothing
+     * @param own discs of the player to move, per position
+     * @param opp discs of the other player, per position
+     * @param flips filled with the flipped discs of each position, 0 if the move is not valid
+     * @param count number of positions, from index 0
+     */
+    public void computeFlips(long[] move, long[] own, long[] opp, long[] flips, int count) {
+        if (vector) {
+            try {
+                VECTOR_FLIPS.invokeExact(move, own, opp, flips, count);
+            } catch (Throwable e) {
+                throw new IllegalStateException("vector flip generation failed", e);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            flips[i] = move[i] == 0 ? 0L : BitBoard.computeFlips(Long.numberOfTrailingZeros(move[i]), own[i], opp[i]);
+        }
+    }
+
+    // results are summed here so the JIT can not drop the measured calls
+    private static volatile long sink;
+
+    /**
+     * Compares positions per second of the Board the game uses, a BitBoard call per position
+     * and the batch, plain and vector, on positions from random games.
+     * Run with --add-modules jdk.incubator.vector and the vector kernels compiled to include the SIMD code.
+     * Arguments: [positions per batch] [milliseconds per measurement]
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        long[] own = new long[count];
+        long[] opp = new long[count];
+        int[] player = new int[count];
+        long[] move = new long[count];
+        long[] moves = new long[count];
+        long[] flips = new long[count];
+        Random random = new Random(24);
+        for (int i = 0; i < count; i++) {
+            long[] position = randomPosition(random, random.nextInt(58));
+            own[i] = position[0];
+            opp[i] = position[1];
+            player[i] = (int) position[2];
+            long valid = BitBoard.generateMoves(own[i], opp[i]);
+            move[i] = valid & -valid;
+        }
+
+        // the batch has to agree with BitBoard before its speed means anything
+        for (BatchMoves batch : new BatchMoves[]{new BatchMoves(false), new BatchMoves(true)}) {
+            batch.generateMoves(own, opp, moves, count);
+            batch.computeFlips(move, own, opp, flips, count);
+            for (int i = 0; i < count; i++) {
+                if (moves[i] != BitBoard.generateMoves(own[i], opp[i]) || (move[i] != 0
+                        && flips[i] != BitBoard.computeFlips(Long.numberOfTrailingZeros(move[i]), own[i], opp[i]))) {
+                    throw new IllegalStateException("batch of " + batch.getLanes() + " lanes differs at position " + i);
+                }
+            }
+        }
+        System.out.println(count + " positions per batch, vector kernels "
+                + (isVectorAvailable() ? "available, " + VECTOR_LANES + " lanes" : "not available"));
+
+        Board board = new Board(Coordinate.of(0, 0), 400, 400, BitBoard.SIZE, BitBoard.SIZE);
+        for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+            boolean report = round == 1;
+            measure("Board.updateValidMoves", report, millis, count, () -> {
+                long sum = 0;
+                for (int i = 0; i < count; i++) {
+                    BitBoard discs = board.getBitBoard();
+                    discs.setDiscs(player[i] == BitBoard.BLACK ? own[i] : opp[i], player[i] == BitBoard.BLACK ? opp[i] : own[i]);
+                    board.updateValidMoves(player[i]);
+                    sum += board.getValidMoveMask();
+                }
+                return sum;
+            });
+            measure("BitBoard moves", report, millis, count, () -> {
+                long sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += BitBoard.generateMoves(own[i], opp[i]);
+                }
+                return sum;
+            });
+            for (boolean useVector : new boolean[]{false, true}) {
+                if (useVector && !isVectorAvailable()) {
+                    continue;
+                }
+                BatchMoves batch = new BatchMoves(useVector);
+                String name = useVector ? "vector batch" : "plain batch";
+                measure(name + " moves", report, millis, count, () -> {
+                    batch.generateMoves(own, opp, moves, count);
+                    return moves[count - 1];
+                });
+                measure(name + " flips", report, millis, count, () -> {
+                    batch.computeFlips(move, own, opp, flips, count);
+                    return flips[count - 1];
+                });
+            }
+        }
+    }
+
+    private interface Pass {
+        long run();
+    }
+
+    private static void measure(String name, boolean report, long millis, int count, Pass pass) {
+        long passes = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        long sum = 0;
+        while (System.nanoTime() < end) {
+            sum += pass.run();
+            passes++;
+        }
+        sink += sum;
+        if (report) {
+            System.out.printf("%-24s %,14.0f positions/sec%n", name, passes * count / ((System.nanoTime() - start) / 1e9));
+        }
+    }
+
+    /**
+     * plays random moves from the start position
+     * @return own, opp and player to move
+     */
+    private static long[] randomPosition(Random random, int plies) {
+        long own = BitBoard.START_BLACK;
+        long opp = BitBoard.START_WHITE;
+        int player = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = BitBoard.generateMoves(own, opp);
+            if (moves != 0) {
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                int square = Long.numberOfTrailingZeros(moves);
+                long flips = BitBoard.computeFlips(square, own, opp);
+                own |= flips | (1L << square);
+                opp &= ~flips;
+            }
+            long swap = own;
+            own = opp;
+            opp = swap;
+            player = BitBoard.opponentOf(player);
+        }
+        return new long[]{own, opp, player};
+    }
+}
@@ -0,0 +1,295 @@
+public class BitBoard {
+    public static final int SIZE = 8;
+    public static final int EMPTY = 0;
+    public static final int BLACK = 1;
+    public static final int WHITE = 2;
+
+    // discs of the standard start position, black on d4 and e5
+    public static final long START_BLACK = 0x0000001008000000L;
+    public static final long START_WHITE = 0x0000000810000000L;
+
+    // opponent discs that can sit inside a horizontal or diagonal run (columns 1..6)
+    private static final long INNER_COLUMNS = 0x7E7E7E7E7E7E7E7EL;
+
+    private long black;
+    private long white;
+
+    /**
+     * Describes an empty 8x8 board stored as two 64-bit masks.
+     * Square index is y * 8 + x, so bit 0 is the top left square.
+     */
+    public BitBoard() {
+        this(0L, 0L);
+    }
+
+    /**
+     * Describes a board with the given discs
+     * @param black mask of black discs
+     * @param white mask of white discs
+     */
+    public BitBoard(long black, long white) {
+        this.black = black;
+        this.white = white;
+    }
+
+    /**
+     * get the square index of a grid position
+     * @param x column
+     * @param y row
+     * @return index 0..63
+     */
+    public static int squareOf(int x, int y) {
+        return y * SIZE + x;
+    }
+
+    /**
+     * get the name of a square, column letter then row number
+     * @param square index 0..63
+     * @return name such as "a1" for square 0
+     */
+    public static String nameOf(int square) {
+        return "" + (char) ('a' + square % SIZE) + (char) ('1' + square / SIZE);
+    }
+
+    /**
+     * get the square of a name written by nameOf, the letter may be upper case
+     * @param name such as "d3"
+     * @return index 0..63
+     * @throws IllegalArgumentException if the name is not a square
+     */
+    public static int parseSquare(String name) {
+        if (name.length() == 2) {
+            int x = Character.toLowerCase(name.charAt(0)) - 'a';
+            int y = name.charAt(1) - '1';
+            if (x >= 0 && x < SIZE && y >= 0 && y < SIZE) {
+                return squareOf(x, y);
+            }
+        }
+        throw new IllegalArgumentException("not a square: " + name);
+    }
+
+    /**
+     * get the other player
+     * @param player 1 or 2
+     * @return 2 or 1
+     */
+    public static int opponentOf(int player) {
+        return player == BLACK ? WHITE : BLACK;
+    }
+
+    /**
+     * get discs of a player
+     * @param player 1 - black, 2 - white
+     * @return mask of that player's discs
+     */
+    public long getDiscs(int player) {
+        return player == BLACK ? black : white;
+    }
+
+    public long getBlack() {
+        return black;
+    }
+
+    public long getWhite() {
+        return white;
+    }
+
+    /**
+     * get state of one square
+     * @param square index 0..63
+     * @return 0 - empty, 1 - black, 2 - white
+     */
+    public int getState(int square) {
+        long bit = 1L << square;
+        if ((black & bit) != 0) {
+            return BLACK;
+        }
+        return (white & bit) != 0 ? WHITE : EMPTY;
+    }
+
+    /**
+     * Set new state for one square
+     * @param square index 0..63
+     * @param state 0 - empty, 1 - black, 2 - white
+     */
+    public void setState(int square, int state) {
+        long bit = 1L << square;
+        black &= ~bit;
+        white &= ~bit;
+        if (state == BLACK) {
+            black |= bit;
+        } else if (state == WHITE) {
+            white |= bit;
+        }
+    }
+
+    /**
+     * remove every disc
+     */
+    public void clear() {
+        black = 0L;
+        white = 0L;
+    }
+
+    /**
+     * replace every disc
+     * @param black mask of black discs
+     * @param white mask of white discs
+     */
+    public void setDiscs(long black, long white) {
+        this.black = black;
+        this.white = white;
+    }
+
+    /**
+     * get number of discs a player has
+     * @param player 1 or 2
+     * @return disc count
+     */
+    public int count(int player) {
+        return Long.bitCount(getDiscs(player));
+    }
+
+    /**
+     * get number of empty squares
+     * @return empty count
+     */
+    public int countEmpty() {
+        return Long.bitCount(~(black | white));
+    }
+
+    /**
+     * get every square the player could move to
+     * @param player 1 or 2
+     * @return mask of valid moves
+     */
+    public long getValidMoves(int player) {
+        return player == BLACK ? generateMoves(black, white) : generateMoves(white, black);
+    }
+
+    /**
+     * get the discs that would be flipped if player moved to square
+     * @param square index 0..63
+     * @param player 1 or 2
+     * @return mask of flipped discs, 0 if the move is not valid
+     */
+    public long getFlips(int square, int player) {
+        return player == BLACK ? computeFlips(square, black, white) : computeFlips(square, white, black);
+    }
+
+    /**
+     * places a disc for player and flips every captured disc
+     * @param square index 0..63
+     * @param player 1 or 2
+     * @return mask of flipped discs
+     */
+    public long play(int square, int player) {
+        long flips = getFlips(square, player);
+        long placed = (1L << square) | flips;
+        if (player == BLACK) {
+            black |= placed;
+            white &= ~flips;
+        } else {
+            white |= placed;
+            black &= ~flips;
+        }
+        return flips;
+    }
+
+    /**
+     * takes back a move made with play
+     * @param square index 0..63 the disc was placed on
+     * @param flips discs play returned
+     * @param player who made the move
+     */
+    public void unplay(int square, long flips, int player) {
+        long placed = 1L << square;
+        if (player == BLACK) {
+            black ^= placed | flips;
+            white |= flips;
+        } else {
+            white ^= placed | flips;
+            black |= flips;
+        }
+    }
+
+    /**
+     * get every empty square where own can capture at least one opponent disc
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @return mask of valid moves
+     */
+    public static long generateMoves(long own, long opp) {
+        long inner = opp & INNER_COLUMNS;
+        long moves = movesInDirection(own, inner, 1)   // left / right
+                | movesInDirection(own, opp, 8)        // up / down
+                | movesInDirection(own, inner, 7)      // anti diagonal
+                | movesInDirection(own, inner, 9);     // diagonal
+        return moves & ~(own | opp);
+    }
+
+    /**
+     * squares reached by sliding from own over a run of opponent discs along one axis, both ways
+     */
+    private static long movesInDirection(long own, long opp, int shift) {
+        long forward = opp & (own << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+
+        long backward = opp & (own >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+
+        return (forward << shift) | (backward >>> shift);
+    }
+
+    /**
+     * get the discs own would flip by moving to square
+     * @param square index 0..63
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @return mask of flipped discs, 0 if the move is not valid
+     */
+    public static long computeFlips(int square, long own, long opp) {
+        long move = 1L << square;
+        long inner = opp & INNER_COLUMNS;
+        return flipsInDirection(move, own, inner, 1)
+                | flipsInDirection(move, own, opp, 8)
+                | flipsInDirection(move, own, inner, 7)
+                | flipsInDirection(move, own, inner, 9);
+    }
+
+    /**
+     * discs flipped by move along one axis, both ways
+     */
+    private static long flipsInDirection(long move, long own, long opp, int shift) {
+        long flips = 0L;
+
+        long forward = opp & (move << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        forward |= opp & (forward << shift);
+        if (((forward << shift) & own) != 0) {
+            flips |= forward;
+        }
+
+        long backward = opp & (move >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        backward |= opp & (backward >>> shift);
+        if (((backward >>> shift) & own) != 0) {
+            flips |= backward;
+        }
+        return flips;
+    }
+}
@@ -8,6 +8,23 @@ public class Board {
     private int height;
     public BoardSquare[][] grid;
     public List<Coordinate> validMoves;
+    private BitBoard bitBoard; // game state of an 8x8 board, grid is only the rendering view
+    private WideBitBoard wideBoard; // game state of other even sizes, null for 8x8 and odd sizes
+    private long[] wideMoves; // valid moves of wideBoard, a word per row
+    private long[] wideFlips;
+    // grid positions of a wide board, Coordinate only shares those of 8x8, made once so moves and flips do not allocate
+    private Coordinate[][] wideCoordinates;
+    private long validMoveMask;
+    private int blackCount;
+    private int whiteCount;
+
+    // undo stack of makeMove: placed square, flipped discs and player of each move
+    private byte[] undoSquares;
+    private long[] undoFlips;
+    private byte[] undoPlayers;
+    private int undoCount;
+    private int currentPlayer; // player validMoves were generated for
+    private long hash; // Zobrist hash of the discs, the side to move is added in getHash
 
     /**
      * Describes a board
@@ -32,16 +49,43 @@ public class Board {
             for (int y = 0; y < NumberOfVerticalSquares; y++) {
                 distanceXNeededforNewBoardSquare = BoardSquareWidth * x; //x position of new BoardSquare
                 distanceYNeededForNewBoardSquare = BoardSquareWidth * y; // y position of new BoardSquare
-                Coordinate CoordinateOfNewSquare = new Coordinate(coordinate.x + distanceXNeededforNewBoardSquare, coordinate.y + distanceYNeededForNewBoardSquare);
+                Coordinate CoordinateOfNewSquare = Coordinate.of(coordinate.x + distanceXNeededforNewBoardSquare, coordinate.y + distanceYNeededForNewBoardSquare);
                 grid[x][y] = new BoardSquare(CoordinateOfNewSquare, BoardSquareWidth, BoardSquareHeight);
             }
         }
-        grid[NumberOfHorizontalSquares/2][NumberOfVerticalSquares/2].setBoardSquareState(1);
-        grid[NumberOfHorizontalSquares/2 -1][NumberOfVerticalSquares/2].setBoardSquareState(2);
-        grid[NumberOfHorizontalSquares/2][NumberOfVerticalSquares/2 -1].setBoardSquareState(2);
-        grid[NumberOfHorizontalSquares/2-1][NumberOfVerticalSquares/2-1].setBoardSquareState(1);
+        placeStartDiscs();
+
+        if (NumberOfHorizontalSquares == BitBoard.SIZE && NumberOfVerticalSquares == BitBoard.SIZE) {
+            bitBoard = new BitBoard();
+            for (int x = 0; x < BitBoard.SIZE; x++) {
+                for (int y = 0; y < BitBoard.SIZE; y++) {
+                    bitBoard.setState(BitBoard.squareOf(x, y), grid[x][y].getBoardSquareState());
+                }
+            }
+            hash = Zobrist.hash(bitBoard.getBlack(), bitBoard.getWhite(), BitBoard.BLACK);
+            blackCount = bitBoard.count(BitBoard.BLACK);
+            whiteCount = bitBoard.count(BitBoard.WHITE);
+            undoSquares = new byte[BitBoard.SIZE * BitBoard.SIZE];
+            undoFlips = new long[BitBoard.SIZE * BitBoard.SIZE];
+            undoPlayers = new byte[BitBoard.SIZE * BitBoard.SIZE];
+        } else if (WideBitBoard.supports(NumberOfHorizontalSquares, NumberOfVerticalSquares)) {
+            wideBoard = new WideBitBoard(NumberOfHorizontalSquares, NumberOfVerticalSquares);
+            for (int x = 0; x < NumberOfHorizontalSquares; x++) {
+                for (int y = 0; y < NumberOfVerticalSquares; y++) {
+                    wideBoard.setState(wideBoard.squareOf(x, y), grid[x][y].getBoardSquareState());
+                }
+            }
+            wideMoves = new long[NumberOfVerticalSquares];
+            wideFlips = new long[NumberOfVerticalSquares];
+            wideCoordinates = new Coordinate[NumberOfHorizontalSquares][NumberOfVerticalSquares];
+            for (int x = 0; x < NumberOfHorizontalSquares; x++) {
+                for (int y = 0; y < NumberOfVerticalSquares; y++) {
+                    wideCoordinates[x][y] = Coordinate.of(x, y);
+                }
+            }
+        }
 
-        validMoves = new ArrayList<>();
+        validMoves = new ArrayList<>(NumberOfHorizontalSquares * NumberOfVerticalSquares);
         updateValidMoves(1);
     }
 
@@ -54,9 +98,45 @@ public class Board {
                 grid[x][y].setBoardSquareState(0);
             }
         }
+        if (bitBoard != null) {
+            bitBoard.clear();
+            hash = 0L;
+            blackCount = 0;
+            whiteCount = 0;
+            undoCount = 0;
+        } else if (wideBoard != null) {
+            wideBoard.clear();
+        }
+        updateValidMoves(1);
+    }
+
+    /**
+     * put the board back to the start position, black to move
+     */
+    public void restart() {
+        reset();
+        placeStartDiscs();
+        if (bitBoard != null) {
+            bitBoard.setDiscs(BitBoard.START_BLACK, BitBoard.START_WHITE);
+            hash = Zobrist.hash(BitBoard.START_BLACK, BitBoard.START_WHITE, BitBoard.BLACK);
+            blackCount = 2;
+            whiteCount = 2;
+        } else if (wideBoard != null) {
+            wideBoard.restart();
+        }
         updateValidMoves(1);
     }
 
+    /**
+     * put the four start discs in the middle of the grid
+     */
+    private void placeStartDiscs() {
+        grid[grid.length/2][grid[0].length/2].setBoardSquareState(1);
+        grid[grid.length/2 -1][grid[0].length/2].setBoardSquareState(2);
+        grid[grid.length/2][grid[0].length/2 -1].setBoardSquareState(2);
+        grid[grid.length/2-1][grid[0].length/2-1].setBoardSquareState(1);
+    }
+
     /**
      * get grid
      * @return grid
@@ -65,6 +145,76 @@ public class Board {
         return grid;
     }
 
+    /**
+     * get the bitboard holding the game state
+     * @return bitboard, or null when the board is not 8x8
+     */
+    public BitBoard getBitBoard() {
+        return bitBoard;
+    }
+
+    /**
+     * get the word-per-row bitboard holding the game state of a board bigger or smaller than 8x8
+     * @return bitboard, or null for 8x8 boards and boards of odd size
+     */
+    public WideBitBoard getWideBitBoard() {
+        return wideBoard;
+    }
+
+    /**
+     * get the Coordinate of a square, the same object every time
+     * @param square index 0..63 of an 8x8 board
+     * @return grid position
+     */
+    public Coordinate getCoordinate(int square) {
+        return Coordinate.ofSquare(square);
+    }
+
+    /**
+     * get every valid move of the player to move as a mask
+     * @return bit per square index, 0 when the board is not 8x8
+     */
+    public long getValidMoveMask() {
+        return validMoveMask;
+    }
+
+    /**
+     * get the discs a move would flip
+     * @param square index 0..63 of the move
+     * @param player 1 - black, 2 - white
+     * @return mask of the discs that change colour
+     */
+    public long getFlips(int square, int player) {
+        return bitBoard.getFlips(square, player);
+    }
+
+    /**
+     * get the player the valid moves belong to
+     * @return 1 - black, 2 - white
+     */
+    public int getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     * get Zobrist hash of the position and the player to move
+     * @return hash
+     */
+    public long getHash() {
+        return currentPlayer == BitBoard.WHITE ? hash ^ Zobrist.WHITE_TO_MOVE : hash;
+    }
+
+    /**
+     * get hash of the position shared by all 8 of its orientations, for stores that keep one entry per position
+     * @return canonical hash, 0 for boards other than 8x8
+     */
+    public long getCanonicalHash() {
+        if (bitBoard == null) {
+            return 0L;
+        }
+        return Symmetry.canonicalHash(bitBoard.getBlack(), bitBoard.getWhite(), currentPlayer);
+    }
+
     /**
      * get valid moves
      * @return valid moves
@@ -79,6 +229,22 @@ public class Board {
      * @param player "which player"
      */
     public void playMove(Coordinate coordinate, int player) {
+        if (bitBoard != null) {
+            playMove(BitBoard.squareOf(coordinate.x, coordinate.y), player);
+            return;
+        }
+        if (wideBoard != null) {
+            int placed = wideBoard.squareOf(coordinate.x, coordinate.y);
+            wideBoard.play(placed, player, wideFlips);
+            grid[coordinate.x][coordinate.y].setBoardSquareState(player);
+            for (int y = 0; y < wideFlips.length; y++) {
+                for (long row = wideFlips[y]; row != 0; row &= row - 1) {
+                    grid[Long.numberOfTrailingZeros(row)][y].setBoardSquareState(player);
+                }
+            }
+            updateValidMoves(BitBoard.opponentOf(player));
+            return;
+        }
         grid[coordinate.x][coordinate.y].setBoardSquareState(player);
         List<Coordinate> changeCellCoordinates = getStateChangesForAllDirections(coordinate, player);
         for (Coordinate swapCoordinate : changeCellCoordinates) {
@@ -92,6 +258,106 @@ public class Board {
         }
     }
 
+    /**
+     * takes player's selection and plays the move on an 8x8 board
+     * @param square index 0..63 of the move
+     * @param player 1 - black, 2 - white
+     */
+    public void playMove(int square, int player) {
+        updateDiscs(square, bitBoard.play(square, player), player, false);
+        undoCount = 0; // moves played this way can not be unmade
+        updateValidMoves(BitBoard.opponentOf(player));
+    }
+
+    /**
+     * Plays a valid move for the player to move and remembers how to take it back.
+     * When the opponent then has no move but the player does, the opponent passes and the player moves again.
+     * @param coordinate of a valid move
+     */
+    public void makeMove(Coordinate coordinate) {
+        if (bitBoard == null) {
+            throw new IllegalStateException("makeMove needs an 8x8 board");
+        }
+        if (!isValidMove(coordinate)) {
+            throw new IllegalArgumentException("not a valid move: " + coordinate);
+        }
+        makeMove(BitBoard.squareOf(coordinate.x, coordinate.y));
+    }
+
+    /**
+     * Plays a valid move for the player to move on an 8x8 board and remembers how to take it back.
+     * @param placed square index 0..63 of a valid move
+     */
+    public void makeMove(int placed) {
+        if (!isValidMove(placed)) {
+            throw new IllegalArgumentException("not a valid move: " + BitBoard.nameOf(placed));
+        }
+        int player = currentPlayer;
+        long flips = bitBoard.play(placed, player);
+        updateDiscs(placed, flips, player, false);
+        undoSquares[undoCount] = (byte) placed;
+        undoFlips[undoCount] = flips;
+        undoPlayers[undoCount] = (byte) player;
+        undoCount++;
+
+        updateValidMoves(BitBoard.opponentOf(player));
+        if (validMoveMask == 0 && bitBoard.getValidMoves(player) != 0) {
+            updateValidMoves(player);
+        }
+    }
+
+    /**
+     * Takes back the last move made with makeMove, restoring the discs, the player to move and the valid moves.
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("no move to unmake");
+        }
+        undoCount--;
+        int placed = undoSquares[undoCount];
+        long flips = undoFlips[undoCount];
+        int player = undoPlayers[undoCount];
+        bitBoard.unplay(placed, flips, player);
+        updateDiscs(placed, flips, player, true);
+        updateValidMoves(player);
+    }
+
+    /**
+     * get number of moves unmakeMove can take back
+     * @return moves on the undo stack
+     */
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    /**
+     * brings the grid, the disc counts and the hash in line with a move played or taken back on the bitboard
+     * @param placed square of the move
+     * @param flips discs the move turned
+     * @param player who made the move
+     * @param undo true when the move is being taken back
+     */
+    private void updateDiscs(int placed, long flips, int player, boolean undo) {
+        int opponent = BitBoard.opponentOf(player);
+        int flippedTo = undo ? opponent : player;
+        grid[placed % BitBoard.SIZE][placed / BitBoard.SIZE].setBoardSquareState(undo ? BitBoard.EMPTY : player);
+        hash ^= Zobrist.key(player, placed);
+        int flipped = Long.bitCount(flips);
+        int change = undo ? -1 : 1;
+        if (player == BitBoard.BLACK) {
+            blackCount += change * (flipped + 1);
+            whiteCount -= change * flipped;
+        } else {
+            whiteCount += change * (flipped + 1);
+            blackCount -= change * flipped;
+        }
+        for (; flips != 0; flips &= flips - 1) {
+            int square = Long.numberOfTrailingZeros(flips);
+            grid[square % BitBoard.SIZE][square / BitBoard.SIZE].setBoardSquareState(flippedTo);
+            hash ^= Zobrist.flipKey(square);
+        }
+    }
+
     /**
      * converts position of cursor to a square on the board
      * @param mouseCoordinate position of cursor
@@ -100,7 +366,7 @@ public class Board {
     public Coordinate convertMouseToGridPosition(Coordinate mouseCoordinate) {
         int gridX = mouseCoordinate.x / grid[0][0].width; //to get a whole number of the x cord
         int gridY = mouseCoordinate.y / grid[0][0].height; // to get a whole number for the y cord
-        return new Coordinate(gridX, gridY);
+        return Coordinate.of(gridX, gridY);
     }
 
     /**
@@ -109,15 +375,50 @@ public class Board {
      * @return
      */
     public boolean isValidMove(Coordinate coordinate) {
+        if (bitBoard != null) {
+            return inBounds(coordinate) && (validMoveMask & (1L << BitBoard.squareOf(coordinate.x, coordinate.y))) != 0;
+        }
+        if (wideBoard != null) {
+            return inBounds(coordinate) && (wideMoves[coordinate.y] & (1L << coordinate.x)) != 0;
+        }
         return getEveryValidMove().contains(coordinate);
     }
 
+    /**
+     * check if a square of an 8x8 board can be played by the player to move
+     * @param square index 0..63
+     * @return true for a valid move
+     */
+    public boolean isValidMove(int square) {
+        return (validMoveMask & (1L << square)) != 0;
+    }
+
     /**
      *
      * @param stillValidMoves
      * @return
      */
     public int getWinner(boolean stillValidMoves) {
+        if (bitBoard != null) {
+            int empty = BitBoard.SIZE * BitBoard.SIZE - blackCount - whiteCount;
+            if (stillValidMoves && empty > 0) {
+                return 0;
+            } else if (blackCount == whiteCount) {
+                return 3;
+            } else {
+                return blackCount > whiteCount ? 1 : 2;
+            }
+        }
+        if (wideBoard != null) {
+            int black = wideBoard.count(BitBoard.BLACK);
+            int white = wideBoard.count(BitBoard.WHITE);
+            if (stillValidMoves && wideBoard.countEmpty() > 0) {
+                return 0;
+            } else if (black == white) {
+                return 3;
+            }
+            return black > white ? 1 : 2;
+        }
         int[] counts = new int[3];
         for (int y = 0; y < grid[0].length; y++) {
             for (int x = 0; x < grid.length; x++) {
@@ -135,6 +436,14 @@ public class Board {
         }
     }
 
+    /**
+     * get the area the board and its outer grid lines cover
+     * @return bounds in pixels
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(coordinate.x, coordinate.y, width + 1, height + 1);
+    }
+
     /**
      * draws board
      * @param g graphics object
@@ -149,10 +458,10 @@ public class Board {
     }
 
     /**
-     * draws grid lines
+     * draws grid lines, the part of the board that never changes
      * @param g graphics object
      */
-    private void drawGridLines(Graphics g) {
+    public void drawGridLines(Graphics g) {
         g.setColor(Color.BLACK);
         // Draw vertical lines
         int y2 = coordinate.y+height;
@@ -172,19 +481,46 @@ public class Board {
      * @param playerID
      */
     public void updateValidMoves(int playerID) {
-        // Remove all highlighted elements so they are not valid moves visually
-        for(Coordinate validMove : validMoves) {
+        currentPlayer = playerID;
+        if (bitBoard != null) {
+            // only squares that gained or lost a move change their highlight, and the list reuses its storage
+            long moves = bitBoard.getValidMoves(playerID);
+            for (long changed = moves ^ validMoveMask; changed != 0; changed &= changed - 1) {
+                int square = Long.numberOfTrailingZeros(changed);
+                grid[square % BitBoard.SIZE][square / BitBoard.SIZE].setHighlight((moves & (1L << square)) != 0);
+            }
+            validMoveMask = moves;
+            validMoves.clear();
+            for (; moves != 0; moves &= moves - 1) {
+                validMoves.add(Coordinate.ofSquare(Long.numberOfTrailingZeros(moves)));
+            }
+            return;
+        }
+        // Remove all highlighted elements so they are not valid moves visually, by index so no iterator is made
+        for (int i = 0; i < validMoves.size(); i++) {
+            Coordinate validMove = validMoves.get(i);
             grid[validMove.x][validMove.y].setHighlight(false);
         }
         validMoves.clear();
+        if (wideBoard != null) {
+            wideBoard.getValidMoves(playerID, wideMoves);
+            for (int y = 0; y < wideMoves.length; y++) {
+                for (long row = wideMoves[y]; row != 0; row &= row - 1) {
+                    Coordinate square = wideCoordinates[Long.numberOfTrailingZeros(row)][y];
+                    validMoves.add(square);
+                    grid[square.x][square.y].setHighlight(true);
+                }
+            }
+            return;
+        }
         for (int x = 0; x < grid.length; x++) {
             for (int y = 0; y < grid[0].length; y++) {
-                if (grid[x][y].getBoardSquareState() == 0 && getStateChangesForAllDirections(new Coordinate(x,y),playerID).size()>0) {
-                    validMoves.add(new Coordinate(x, y));
+                Coordinate square = Coordinate.of(x, y);
+                if (grid[x][y].getBoardSquareState() == 0 && getStateChangesForAllDirections(square, playerID).size()>0) {
+                    validMoves.add(square);
                 }
             }
         }
-//        }
         // Visually update all valid move positions to show with a highlight
         for(Coordinate validMove : validMoves) {
             grid[validMove.x][validMove.y].setHighlight(true);
@@ -195,12 +531,11 @@ public class Board {
      * check which squares if any require their state to be changed based off of the move played in one direction
      * @param coordinate "move played"
      * @param playerID "which player"
-     * @param direction "check in which direction;
-     * @return all squares that need to be changed;
+     * @param dx "check in which direction, x step;
+     * @param dy "y step;
+     * @param result all squares that need to be changed are added here;
      */
-    private List<Coordinate> getStateChangesForMoveInDirection(Coordinate coordinate, int playerID, Coordinate direction) {
-        List<Coordinate> result = new ArrayList<>();
-        Coordinate movingPos = new Coordinate(coordinate);
+    private void getStateChangesForMoveInDirection(Coordinate coordinate, int playerID, int dx, int dy, List<Coordinate> result) {
         int otherPlayer;
         if (playerID == 1) {
             otherPlayer = 2;
@@ -208,18 +543,23 @@ public class Board {
         else{
             otherPlayer = 1;
         }
-        movingPos.add(direction);
+        int x = coordinate.x + dx;
+        int y = coordinate.y + dy;
+        int run = 0;
         // Keep moving while there are positions that would be changed.
-        while(inBounds(movingPos) && grid[movingPos.x][movingPos.y].getBoardSquareState() == otherPlayer) {
-            result.add(new Coordinate(movingPos));
-            movingPos.add(direction);
+        while(inBounds(x, y) && grid[x][y].getBoardSquareState() == otherPlayer) {
+            x += dx;
+            y += dy;
+            run++;
         }
         // If the end position is off the board, or the end playerID does not match the player, that
         // means that the move would not give any valid switches in this direction.
-        if(!inBounds(movingPos) || grid[movingPos.x][movingPos.y].getBoardSquareState() != playerID) {
-            result.clear();
+        if(run == 0 || !inBounds(x, y) || grid[x][y].getBoardSquareState() != playerID) {
+            return;
+        }
+        for (int i = 1; i <= run; i++) {
+            result.add(Coordinate.of(coordinate.x + i * dx, coordinate.y + i * dy));
         }
-        return result;
     }
 
     /**
@@ -230,14 +570,34 @@ public class Board {
      */
     public List<Coordinate> getStateChangesForAllDirections(Coordinate coordinate, int playerID) {
         List<Coordinate> result = new ArrayList<>();
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(0,1))); //up
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(1,1))); //top right
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(1,0))); //right
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(1,-1))); //bottom right
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(0,-1))); // down
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(-1,-1))); //bottom left
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(-1,0))); // left
-        result.addAll(getStateChangesForMoveInDirection(coordinate, playerID, new Coordinate(-1,1))); // top left
+        if (bitBoard != null) {
+            if (inBounds(coordinate)) {
+                long flips = bitBoard.getFlips(BitBoard.squareOf(coordinate.x, coordinate.y), playerID);
+                for (; flips != 0; flips &= flips - 1) {
+                    result.add(Coordinate.ofSquare(Long.numberOfTrailingZeros(flips)));
+                }
+            }
+            return result;
+        }
+        if (wideBoard != null) {
+            if (inBounds(coordinate)) {
+                wideBoard.getFlips(wideBoard.squareOf(coordinate.x, coordinate.y), playerID, wideFlips);
+                for (int y = 0; y < wideFlips.length; y++) {
+                    for (long row = wideFlips[y]; row != 0; row &= row - 1) {
+                        result.add(wideCoordinates[Long.numberOfTrailingZeros(row)][y]);
+                    }
+                }
+            }
+            return result;
+        }
+        getStateChangesForMoveInDirection(coordinate, playerID, 0, 1, result); //up
+        getStateChangesForMoveInDirection(coordinate, playerID, 1, 1, result); //top right
+        getStateChangesForMoveInDirection(coordinate, playerID, 1, 0, result); //right
+        getStateChangesForMoveInDirection(coordinate, playerID, 1, -1, result); //bottom right
+        getStateChangesForMoveInDirection(coordinate, playerID, 0, -1, result); // down
+        getStateChangesForMoveInDirection(coordinate, playerID, -1, -1, result); //bottom left
+        getStateChangesForMoveInDirection(coordinate, playerID, -1, 0, result); // left
+        getStateChangesForMoveInDirection(coordinate, playerID, -1, 1, result); // top left
 
         return result;
     }
@@ -248,6 +608,16 @@ public class Board {
      * @return boolean
      */
     private boolean inBounds(Coordinate coordinate) {
-        return !(coordinate.x < 0 || coordinate.y < 0 || coordinate.x >= grid.length || coordinate.y >= grid[0].length);
+        return inBounds(coordinate.x, coordinate.y);
+    }
+
+    /**
+     * check if still on board;
+     * @param x column
+     * @param y row
+     * @return boolean
+     */
+    private boolean inBounds(int x, int y) {
+        return !(x < 0 || y < 0 || x >= grid.length || y >= grid[0].length);
     }
 }
\ No newline at end of file
@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class BoardBenchmark {
+    private static final String[] PHASES = {"opening", "midgame", "endgame"};
+    private static final int[] PHASE_PLIES = {4, 30, 50};
+    private static final int POSITIONS_PER_PHASE = 256;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // results are summed here so the JIT can not drop the measured calls
+    private static volatile long sink;
+
+    /**
+     * One measured operation. Each call to run does a batch of operations on the corpus,
+     * setup puts the corpus back afterwards and is not timed.
+     */
+    private abstract static class Benchmark {
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        void setup() {
+        }
+
+        /**
+         * @return number of operations done
+         */
+        abstract int run();
+    }
+
+    private final long warmupMillis;
+    private final long measureMillis;
+
+    /**
+     * Describes a benchmark of the Board calls the game and the computer player use every move,
+     * measured on fixed opening, midgame and endgame positions.
+     * Reports throughput and the bytes each operation allocates, like a JMH run with the GC profiler.
+     * @param warmupMillis time each benchmark runs before measuring, to let the JIT compile it
+     * @param measureMillis time each benchmark is measured for
+     */
+    public BoardBenchmark(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    /**
+     * runs every benchmark on every phase
+     * @return results keyed "benchmark.phase.ops" (operations per second) and "benchmark.phase.bytes" (bytes per operation)
+     */
+    public Properties runAll() {
+        Properties results = new Properties();
+        System.out.printf("%-38s %-8s %16s %12s%n", "benchmark", "phase", "ops/s", "B/op");
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            List<int[]> lines = corpus(PHASE_PLIES[phase], new Random(phase + 1));
+            for (Benchmark benchmark : benchmarks(lines)) {
+                double[] result = measure(benchmark);
+                System.out.printf("%-38s %-8s %,16.0f %12.1f%n", benchmark.name, PHASES[phase], result[0], result[1]);
+                results.setProperty(benchmark.name + "." + PHASES[phase] + ".ops", Double.toString(result[0]));
+                results.setProperty(benchmark.name + "." + PHASES[phase] + ".bytes", Double.toString(result[1]));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * runs batches for the warmup time, then for the measurement time
+     * @return operations per second and bytes allocated per operation
+     */
+    private double[] measure(Benchmark benchmark) {
+        long thread = Thread.currentThread().getId();
+        long warmupEnd = System.nanoTime() + warmupMillis * 1000000L;
+        while (System.nanoTime() < warmupEnd) {
+            benchmark.setup();
+            benchmark.run();
+        }
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        while (nanos < measureMillis * 1000000L) {
+            benchmark.setup();
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            ops += benchmark.run();
+            nanos += System.nanoTime() - start;
+            bytes += THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+        }
+        return new double[]{ops * 1e9 / nanos, (double) bytes / ops};
+    }
+
+    /**
+     * the measured calls, each on its own copy of the phase's positions
+     */
+    private static List<Benchmark> benchmarks(List<int[]> lines) {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        Board[] shared = replayAll(lines);
+
+        benchmarks.add(new Benchmark("Board.updateValidMoves") {
+            int run() {
+                long sum = 0;
+                for (Board board : shared) {
+                    board.updateValidMoves(board.getCurrentPlayer());
+                    sum += board.getEveryValidMove().size();
+                }
+                sink += sum;
+                return shared.length;
+            }
+        });
+
+        benchmarks.add(new Benchmark("Board.playMove") {
+            Board[] boards;
+
+            void setup() {
+                boards = replayAll(lines);
+            }
+
+            int run() {
+                for (Board board : boards) {
+                    board.playMove(board.getEveryValidMove().get(0), board.getCurrentPlayer());
+                }
+                sink += boards[0].getCurrentPlayer();
+                return boards.length;
+            }
+        });
+
+        benchmarks.add(new Benchmark("Board.makeMove+unmakeMove") {
+            int run() {
+                for (Board board : shared) {
+                    board.makeMove(board.getEveryValidMove().get(0));
+                    board.unmakeMove();
+                }
+                sink += shared[0].getCurrentPlayer();
+                return shared.length;
+            }
+        });
+
+        benchmarks.add(new Benchmark("Board.getStateChangesForAllDirections") {
+            int run() {
+                long sum = 0;
+                int ops = 0;
+                for (Board board : shared) {
+                    for (Coordinate move : board.getEveryValidMove()) {
+                        sum += board.getStateChangesForAllDirections(move, board.getCurrentPlayer()).size();
+                        ops++;
+                    }
+                }
+                sink += sum;
+                return ops;
+            }
+        });
+
+        benchmarks.add(new Benchmark("Board.getWinner") {
+            int run() {
+                long sum = 0;
+                for (Board board : shared) {
+                    sum += board.getWinner(false);
+                }
+                sink += sum;
+                return shared.length;
+            }
+        });
+
+        ComputerPlayer[] players = new ComputerPlayer[shared.length];
+        for (int i = 0; i < shared.length; i++) {
+            players[i] = new ComputerPlayer(shared[i]);
+        }
+        benchmarks.add(new Benchmark("ComputerPlayer.chooseMove") {
+            int run() {
+                long sum = 0;
+                for (ComputerPlayer player : players) {
+                    sum += player.chooseMove().x;
+                }
+                sink += sum;
+                return players.length;
+            }
+        });
+        return benchmarks;
+    }
+
+    /**
+     * Plays seeded random games to collect positions with a move to play.
+     * @param plies moves played to reach each position
+     * @return move sequences, each square is stored with its player as player * 64 + square
+     */
+    private static List<int[]> corpus(int plies, Random random) {
+        List<int[]> lines = new ArrayList<>();
+        while (lines.size() < POSITIONS_PER_PHASE) {
+            BitBoard board = new BitBoard(BitBoard.START_BLACK, BitBoard.START_WHITE);
+            int[] line = new int[plies];
+            int player = BitBoard.BLACK;
+            int played = 0;
+            while (played < plies) {
+                long moves = board.getValidMoves(player);
+                if (moves == 0) {
+                    player = BitBoard.opponentOf(player);
+                    if (board.getValidMoves(player) == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                int square = Long.numberOfTrailingZeros(moves);
+                board.play(square, player);
+                line[played++] = player * 64 + square;
+                player = BitBoard.opponentOf(player);
+            }
+            // keep only positions where someone still has a move
+            if (played == plies && (board.getValidMoves(player) | board.getValidMoves(BitBoard.opponentOf(player))) != 0) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static Board[] replayAll(List<int[]> lines) {
+        Board[] boards = new Board[lines.size()];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = replay(lines.get(i));
+        }
+        return boards;
+    }
+
+    /**
+     * plays a move sequence on a new Board, passing like the game does when a player has no move
+     */
+    private static Board replay(int[] line) {
+        Board board = new Board(Coordinate.of(0, 0), 400, 400, BitBoard.SIZE, BitBoard.SIZE);
+        for (int move : line) {
+            int square = move % 64;
+            board.playMove(square, move / 64);
+        }
+        if (board.getEveryValidMove().isEmpty()) {
+            board.updateValidMoves(BitBoard.opponentOf(board.getCurrentPlayer()));
+        }
+        return board;
+    }
+
+    /**
+     * Compares results with a baseline.
+     * @param allowedSlowdown fraction of the baseline throughput that may be lost
+     * @return false if any benchmark lost more than the allowed throughput or allocates more than before
+     */
+    private static boolean compare(Properties results, Properties baseline, double allowedSlowdown) {
+        boolean held = true;
+        for (String key : new TreeSet<>(results.stringPropertyNames())) {
+            String old = baseline.getProperty(key);
+            if (old == null) {
+                continue;
+            }
+            double now = Double.parseDouble(results.getProperty(key));
+            double before = Double.parseDouble(old);
+            boolean worse;
+            if (key.endsWith(".ops")) {
+                worse = now < before * (1 - allowedSlowdown);
+            } else {
+                worse = now > before + 0.5; // allow rounding of the allocation counter
+            }
+            System.out.printf("%-52s %14.1f -> %14.1f%s%n", key, before, now, worse ? "  REGRESSION" : "");
+            held &= !worse;
+        }
+        return held;
+    }
+
+    /**
+     * Runs the benchmarks. With a baseline file the results are checked against it and the exit status is 1
+     * on a regression; if the file does not exist yet it is written.
+     * Arguments: [measure seconds per benchmark] [baseline file] [allowed slowdown, default 0.1]
+     */
+    public static void main(String[] args) throws IOException {
+        long measureMillis = args.length > 0 ? (long) (Double.parseDouble(args[0]) * 1000) : 2000;
+        BoardBenchmark benchmark = new BoardBenchmark(measureMillis / 2, measureMillis);
+        Properties results = benchmark.runAll();
+        if (args.length < 2) {
+            return;
+        }
+        Path baselineFile = Paths.get(args[1]);
+        if (!Files.exists(baselineFile)) {
+            try (OutputStream out = Files.newOutputStream(baselineFile)) {
+                results.store(out, "BoardBenchmark baseline");
+            }
+            System.out.println("baseline written to " + baselineFile);
+            return;
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        double allowedSlowdown = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        if (!compare(results, baseline, allowedSlowdown)) {
+            System.exit(1);
+        }
+    }
+}
@@ -4,10 +4,31 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class BoardInterface extends JPanel implements MouseListener {
     private static final int P_Height = 700;
     private static final int P_Width = 700;
+    private static final long CPU_TIME_BUDGET_MILLIS = 1000;
+    private static final int CPU_HASH_SIZE_MB = 64;
+    private static final int CPU_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int CPU_MCTS_MEMORY_MB = 256;
+    private static final int CPU_MCTS_RAVE = 0; // RAVE played no stronger than plain UCT in self-play
+    private static final String OPENING_BOOK_FILE = "book.bin";
+    private static final String EVAL_WEIGHTS_FILE = "eval.bin";
+    private static final String GAME_ARCHIVE_FILE = "games.bin";
+    private static final String[] ARCHIVE_PLAYERS = {"human", "search", "random", "mcts"}; // new names go last
+    private static final int HUMAN = 0;
+    private static final int SEARCH = 1;
+    private static final int RANDOM = 2;
+    private static final int MCTS = 3;
+    private static final Font STATE_FONT = new Font("SansSerif", Font.BOLD, 40);
+    private static final int STATE_BAND_HEIGHT = 100; // strip at the bottom where the game state is written
 
     private Board board;
     public enum PlayingState {WhiteTurn, BlackTurn,Draw, WhiteWin, BlackWin}
@@ -23,12 +44,21 @@ public class BoardInterface extends JPanel implements MouseListener {
     public static final Color LIGHT_GREEN = lightGreen;
 
     private JButton automatedGameButton;
+    private JButton moveNowButton;
+    private JButton cancelButton;
+    private JLabel thinkingLabel; // progress of the computer's search
+    private SwingWorker<Coordinate, String> computerMove; // search running off the event thread, null when idle
+    private boolean moveCancelled; // the running computer move is to be thrown away
+    private final GameRecord gameRecord = new GameRecord(); // moves so far, archived when the game ends
+    private boolean gameArchived;
+    private BoardRenderer renderer; // made on the first paint, once the screen is known
+    private String paintedStateString; // game state text the screen shows, or is about to
 
     public BoardInterface() {
         setPreferredSize(new Dimension(P_Width, P_Height));
         setBackground(LIGHT_GREEN);
 
-        board = new Board(new Coordinate(0, 0), P_Width, P_Height, 8, 8);
+        board = new Board(Coordinate.of(0, 0), P_Width, P_Height, 8, 8);
         setGameState(PlayingState.BlackTurn);
         selectComputerMode();
         addMouseListener(this);
@@ -42,6 +72,45 @@ public class BoardInterface extends JPanel implements MouseListener {
         });
         add(automatedGameButton);
 
+        moveNowButton = new JButton("Move Now");
+        moveNowButton.addActionListener(e -> cpuMode.moveNow());
+        add(moveNowButton);
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> cancelComputerMove());
+        add(cancelButton);
+        thinkingLabel = new JLabel(" ");
+        add(thinkingLabel);
+        setThinking(false);
+    }
+
+    /**
+     * enables the buttons that act on a running computer move
+     * @param thinking true while the computer is choosing a move
+     */
+    private void setThinking(boolean thinking) {
+        moveNowButton.setEnabled(thinking);
+        cancelButton.setEnabled(thinking);
+    }
+
+    /**
+     * stop the computer searching on the human's time
+     */
+    private void stopPondering() {
+        if (cpuMode instanceof SearchPlayer) {
+            ((SearchPlayer) cpuMode).stopPondering();
+        }
+    }
+
+    /**
+     * Stops the computer's search and throws its move away, so the human plays the computer's move instead.
+     * Clicks stay ignored until the search has actually returned.
+     */
+    private void cancelComputerMove() {
+        if (computerMove == null) {
+            return;
+        }
+        moveCancelled = true;
+        cpuMode.moveNow();
     }
 
     @Override
@@ -59,10 +128,50 @@ public class BoardInterface extends JPanel implements MouseListener {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        board.paint(g);
+        if (renderer == null) {
+            renderer = new BoardRenderer(board, opaqueBackground(), getGraphicsConfiguration());
+        }
+        Rectangle changed = renderer.update();
+        if (changed != null && !g.getClipBounds().contains(changed)) {
+            repaint(changed); // squares changed outside this paint's clip still have to reach the screen
+        }
+        renderer.paint(g);
         drawGameState(g);
     }
 
+    /**
+     * the translucent background colour as it looks over the panel colour, so it can be drawn once into an image
+     */
+    private Color opaqueBackground() {
+        Color base = UIManager.getColor("Panel.background");
+        if (base == null) {
+            base = Color.LIGHT_GRAY;
+        }
+        float alpha = LIGHT_GREEN.getAlpha() / 255f;
+        return new Color(Math.round(LIGHT_GREEN.getRed() * alpha + base.getRed() * (1 - alpha)),
+                Math.round(LIGHT_GREEN.getGreen() * alpha + base.getGreen() * (1 - alpha)),
+                Math.round(LIGHT_GREEN.getBlue() * alpha + base.getBlue() * (1 - alpha)));
+    }
+
+    /**
+     * Repaints only what the last moves changed: the squares that were placed, flipped or (un)highlighted,
+     * and the game state text if it changed. Before the first paint everything is painted anyway.
+     */
+    private void repaintChanges() {
+        if (renderer == null) {
+            repaint();
+            return;
+        }
+        Rectangle changed = renderer.update();
+        if (changed != null) {
+            repaint(changed);
+        }
+        if (!gameStateString.equals(paintedStateString)) {
+            repaint(0, P_Height - STATE_BAND_HEIGHT, P_Width, STATE_BAND_HEIGHT);
+            paintedStateString = gameStateString;
+        }
+    }
+
     /**
      * Invoked when a mouse button is pressed on the GamePanel.
      * Handles the logic for executing a move, checking the game result, and triggering the second player's move (if applicable).
@@ -76,15 +185,18 @@ public class BoardInterface extends JPanel implements MouseListener {
      */
     @Override
     public void mousePressed(MouseEvent e) {
+        if (computerMove != null) {
+            return; // the computer is still choosing its move
+        }
         if (gameState == PlayingState.WhiteTurn || gameState == PlayingState.BlackTurn) {
-            Coordinate gridPosition = board.convertMouseToGridPosition(new Coordinate(e.getX(), e.getY()));
+            Coordinate gridPosition = board.convertMouseToGridPosition(Coordinate.of(e.getX(), e.getY()));
             executeMove(gridPosition);
             checkEndResult(true);
 
             // will run when its player 2's turn and player 2 is the computer
             secondPlayerMove();
         }
-        repaint();
+        repaintChanges();
     }
 
     /**
@@ -101,9 +213,11 @@ public class BoardInterface extends JPanel implements MouseListener {
             System.out.println("Invalid move, please select a highlighted square");
         } else if (gameState == PlayingState.BlackTurn) {
             board.playMove(gridPosition, 1);
+            gameRecord.addMove(BitBoard.squareOf(gridPosition.x, gridPosition.y), 1);
             setGameState(PlayingState.WhiteTurn);
         } else if (gameState == PlayingState.WhiteTurn) {
             board.playMove(gridPosition, 2);
+            gameRecord.addMove(BitBoard.squareOf(gridPosition.x, gridPosition.y), 2);
             setGameState(PlayingState.BlackTurn);
         }
     }
@@ -161,6 +275,27 @@ public class BoardInterface extends JPanel implements MouseListener {
         } else if (result == 3) {
             setGameState(PlayingState.Draw);
         }
+        if (result != 0) {
+            stopPondering();
+            archiveGame();
+        }
+    }
+
+    /**
+     * Adds the finished game to the game archive next to the game, once per game.
+     */
+    private void archiveGame() {
+        if (gameArchived || board.getBitBoard() == null) {
+            return;
+        }
+        gameArchived = true;
+        BitBoard discs = board.getBitBoard();
+        gameRecord.setResult(discs.count(BitBoard.BLACK), discs.count(BitBoard.WHITE));
+        try (GameArchiveWriter writer = GameArchiveWriter.append(Paths.get(GAME_ARCHIVE_FILE), ARCHIVE_PLAYERS)) {
+            writer.write(gameRecord);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not archive game in " + GAME_ARCHIVE_FILE + ": " + e.getMessage());
+        }
     }
 
 
@@ -171,29 +306,115 @@ public class BoardInterface extends JPanel implements MouseListener {
      */
     private void drawGameState(Graphics g) {
         g.setColor(Color.LIGHT_GRAY);
-        g.setFont(new Font("SansSerif", Font.BOLD, 40));
+        g.setFont(STATE_FONT);
         int strWidth = g.getFontMetrics().stringWidth(gameStateString);
         g.drawString(gameStateString, P_Width/2 - strWidth/2, P_Height -45);
     }
 
     /**
      * Executes a move for the second player (if it is the computer) while it is their turn.
-     * Uses the cpuMode object to choose the move to make.
+     * Uses the cpuMode object to choose the move on a background thread so the window stays responsive,
+     * showing the progress of the search as it goes, then plays the move on the event thread
+     * and asks again in case the first player has to pass.
+     * Move Now plays the best move found so far, Cancel leaves the move to the human.
      */
     private void secondPlayerMove(){
-        while (gameState == PlayingState.WhiteTurn && cpuMode != null){
-            executeMove(cpuMode.chooseMove());
-            checkEndResult(true);
+        if (gameState != PlayingState.WhiteTurn || cpuMode == null || computerMove != null) {
+            return;
         }
+        moveCancelled = false;
+        computerMove = new SwingWorker<Coordinate, String>() {
+            @Override
+            protected Coordinate doInBackground() {
+                if (!(cpuMode instanceof SearchPlayer)) {
+                    return cpuMode.chooseMove();
+                }
+                SearchPlayer searchPlayer = (SearchPlayer) cpuMode;
+                searchPlayer.setListener((depth, move, score, nodes) ->
+                        publish(String.format("depth %d, best %s, score %d, %,d nodes", depth, BitBoard.nameOf(move), score, nodes)));
+                try {
+                    return searchPlayer.chooseMove();
+                } finally {
+                    searchPlayer.setListener(null);
+                }
+            }
+
+            @Override
+            protected void process(List<String> progress) {
+                if (computerMove != this) {
+                    return; // progress that arrives after the move was played would hide the metrics
+                }
+                thinkingLabel.setText(progress.get(progress.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                computerMove = null;
+                setThinking(false);
+                if (moveCancelled) {
+                    stopPondering(); // it expects the cancelled move to be played
+                    thinkingLabel.setText("Cancelled, play White's move");
+                    return;
+                }
+                try {
+                    executeMove(get());
+                    showMetrics();
+                    checkEndResult(true);
+                } catch (InterruptedException | ExecutionException e) {
+                    System.out.println("Computer move failed: " + e);
+                    return;
+                }
+                repaintChanges();
+                secondPlayerMove();
+            }
+        };
+        thinkingLabel.setText("Thinking...");
+        setThinking(true);
+        computerMove.execute();
     }
 
 
+    /**
+     * Shows what the searches that chose the computer's moves counted so far this game, all the counters in the tooltip.
+     * For Monte Carlo tree search it shows the playouts of the last move.
+     */
+    private void showMetrics() {
+        if (cpuMode instanceof MonteCarloPlayer) {
+            MonteCarloSearch search = ((MonteCarloPlayer) cpuMode).getSearch();
+            thinkingLabel.setText(String.format("%,d playouts, %,d playouts/sec on %d threads, %,d kept from earlier moves, win rate %.2f",
+                    search.getPlayouts(), search.getPlayoutsPerSecond(), search.getThreads(), search.getReusedVisits(),
+                    search.getWinRate()));
+            return;
+        }
+        if (!(cpuMode instanceof SearchPlayer)) {
+            return;
+        }
+        SearchMetrics metrics = ((SearchPlayer) cpuMode).getMetrics();
+        if (metrics == null) {
+            return;
+        }
+        long probes = Math.max(1, metrics.getTableProbes());
+        thinkingLabel.setText(String.format("table hits %.0f%%, collisions %.0f%%, first move cutoffs %.0f%%, %d endgame solves",
+                100.0 * metrics.getTableHits() / probes, 100.0 * metrics.getTableCollisions() / probes,
+                100 * metrics.getFirstMoveCutoffRate(), metrics.getEndgameSolves()));
+        thinkingLabel.setToolTipText(metrics.toString());
+    }
+
     /**
      * Plays the entire game automatically by making moves for both players until the game ends.
      * Uses the testMode object of ComputerPlayer to choose moves.
      */
     private void autoGame(){
+        if (computerMove != null) {
+            return;
+        }
+        stopPondering();
         testMode = new ComputerPlayer(board);
+        if (gameRecord.getMoveCount() == 0) {
+            gameRecord.setPlayers(RANDOM, RANDOM);
+        } else {
+            gameArchived = true; // the archive has one player per color, a game finished by random moves fits neither
+        }
         while (board.getEveryValidMove().size() > 0) {
             if (gameState == PlayingState.BlackTurn) {
                 executeMove(testMode.chooseMove());
@@ -201,16 +422,17 @@ public class BoardInterface extends JPanel implements MouseListener {
                 executeMove(testMode.chooseMove());
             }
         }
-        repaint();
+        repaintChanges();
     }
 
 
     /**
-     * Prompts the user to select the game mode: 2 Players or 1 Player.
+     * Prompts the user to select the game mode: 2 Players, 1 Player against the search, against Monte Carlo tree search
+     * or against random moves.
      * Sets the cpuMode object of ComputerPlayer based on the user's choice.
      */
     private void selectComputerMode() {
-        String[] options = new String[]{"2 Players", "1 Player"};
+        String[] options = new String[]{"2 Players", "1 Player", "1 Player (MCTS)", "1 Player (Random)"};
         String message = "Select the game mode:";
         int playerChoice = JOptionPane.showOptionDialog(null, message,
                 "Choose player type",
@@ -219,10 +441,61 @@ public class BoardInterface extends JPanel implements MouseListener {
         switch (playerChoice) {
             case 0:
                 cpuMode = null;
+                gameRecord.setPlayers(HUMAN, HUMAN);
                 break;
             case 1:
+                SearchPlayer searchPlayer = new SearchPlayer(board, CPU_TIME_BUDGET_MILLIS, CPU_HASH_SIZE_MB, CPU_THREADS);
+                searchPlayer.setOpeningBook(openOpeningBook());
+                searchPlayer.getSearch().setWeights(loadEvalWeights());
+                searchPlayer.setPondering(true);
+                searchPlayer.getSearch().setMetricsEnabled(true);
+                cpuMode = searchPlayer;
+                gameRecord.setPlayers(HUMAN, SEARCH);
+                break;
+            case 2:
+                cpuMode = new MonteCarloPlayer(board, CPU_TIME_BUDGET_MILLIS, CPU_MCTS_MEMORY_MB, CPU_THREADS, CPU_MCTS_RAVE);
+                gameRecord.setPlayers(HUMAN, MCTS);
+                break;
+            case 3:
                 cpuMode = new ComputerPlayer(board);
+                gameRecord.setPlayers(HUMAN, RANDOM);
                 break;
         }
     }
+
+    /**
+     * Opens the opening book next to the game if there is one.
+     *
+     * @return the book, or null if there is no readable book file
+     */
+    private OpeningBook openOpeningBook() {
+        Path path = Paths.get(OPENING_BOOK_FILE);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(path);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not open opening book " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads the pattern evaluation weights next to the game if there are any.
+     *
+     * @return the weights, or null to play with the built-in evaluation
+     */
+    private PatternWeights loadEvalWeights() {
+        Path path = Paths.get(EVAL_WEIGHTS_FILE);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return PatternWeights.load(path);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not load evaluation weights " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
 }
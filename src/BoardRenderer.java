@@ -0,0 +1,87 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class BoardRenderer {
+    private final Board board;
+    private final Rectangle bounds;
+    private final BufferedImage background; // background colour and grid lines, drawn once
+    private final BufferedImage frame;      // the whole board as last drawn
+    private final Graphics2D frameGraphics;
+
+    /**
+     * Describes a renderer that keeps a board drawn in an image and only redraws the squares that changed.
+     * The background and grid lines are drawn once into their own image,
+     * a changed square is restored from it and then painted again.
+     * @param board to draw
+     * @param background opaque colour behind the board
+     * @param configuration screen the images are shown on, null for a plain image
+     */
+    public BoardRenderer(Board board, Color background, GraphicsConfiguration configuration) {
+        this.board = board;
+        bounds = board.getBounds();
+        this.background = createImage(configuration);
+        Graphics2D g = this.background.createGraphics();
+        g.translate(-bounds.x, -bounds.y);
+        g.setColor(background);
+        g.fill(bounds);
+        board.drawGridLines(g);
+        g.dispose();
+
+        frame = createImage(configuration);
+        frameGraphics = frame.createGraphics();
+        frameGraphics.drawImage(this.background, 0, 0, null);
+        frameGraphics.translate(-bounds.x, -bounds.y);
+        BoardSquare[][] grid = board.getGrid();
+        for (BoardSquare[] column : grid) {
+            for (BoardSquare square : column) {
+                square.paint(frameGraphics);
+                square.clearDirty();
+            }
+        }
+    }
+
+    private BufferedImage createImage(GraphicsConfiguration configuration) {
+        // a compatible image can be kept in video memory and copied to the screen without conversion
+        return configuration != null ? configuration.createCompatibleImage(bounds.width, bounds.height)
+                : new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Redraws the squares changed since the last update into the frame.
+     * @return area of the component to repaint, or null if nothing changed
+     */
+    public Rectangle update() {
+        BoardSquare[][] grid = board.getGrid();
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (BoardSquare[] column : grid) {
+            for (BoardSquare square : column) {
+                if (!square.isDirty()) {
+                    continue;
+                }
+                int x = square.coordinate.x;
+                int y = square.coordinate.y;
+                // a square only ever draws inside its own width and height, so restoring that area undoes it
+                frameGraphics.drawImage(background, x, y, x + square.width, y + square.height,
+                        x - bounds.x, y - bounds.y, x - bounds.x + square.width, y - bounds.y + square.height, null);
+                square.paint(frameGraphics);
+                square.clearDirty();
+                left = Math.min(left, x);
+                top = Math.min(top, y);
+                right = Math.max(right, x + square.width);
+                bottom = Math.max(bottom, y + square.height);
+            }
+        }
+        return left > right ? null : new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * copies the frame to the screen, only the part inside the clip of g is actually drawn
+     * @param g graphics of the component
+     */
+    public void paint(Graphics g) {
+        g.drawImage(frame, bounds.x, bounds.y, null);
+    }
+}
@@ -1,11 +1,14 @@
 import java.awt.*;
 
 public class BoardSquare {
+    private static final Color HIGHLIGHT = new Color(255, 187, 22, 203); // shared so painting never allocates
+
     Coordinate coordinate;
     int width;
     int height;
     private int BoardSquareState;
     private boolean highlight;
+    private boolean dirty = true; // changed since it was last drawn by a BoardRenderer
 
     /**
      * Describes a singular square on the board
@@ -28,6 +31,7 @@ public class BoardSquare {
      *                 2 - white
      */
     public void setBoardSquareState(int newState) {
+        dirty |= BoardSquareState != newState;
         this.BoardSquareState = newState;
     }
 
@@ -45,9 +49,25 @@ public class BoardSquare {
      * @param highlight true to enable highlighting, false to disable highlighting
      */
     public void setHighlight(boolean highlight) {
+        dirty |= this.highlight != highlight;
         this.highlight = highlight;
     }
 
+    /**
+     * check if the state or highlight changed since the square was last drawn
+     * @return true if the square needs drawing
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * mark the square as drawn
+     */
+    public void clearDirty() {
+        dirty = false;
+    }
+
     /**
      * Draws either a White or Black oval as necessary.
      *
@@ -55,7 +75,7 @@ public class BoardSquare {
      */
     public void paint(Graphics g) {
         if(highlight) {
-            g.setColor(new Color(255, 187, 22, 203));
+            g.setColor(HIGHLIGHT);
             g.fillRect(coordinate.x, coordinate.y, width, height);
         }
         if(BoardSquareState == 0) return;
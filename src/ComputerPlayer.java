@@ -1,8 +1,9 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class ComputerPlayer {
 
-    private Board board;
+    protected Board board;
+    private final SplittableRandom random = new SplittableRandom(); // a player chooses on one thread at a time
 
     public ComputerPlayer(Board board) {
         this.board = board;
@@ -14,9 +15,15 @@ public class ComputerPlayer {
      * @return The randomly selected valid move as a Coordinate object.
      */
     public Coordinate chooseMove() {
-        Random random = new Random();
         int sizeMoves = board.getEveryValidMove().size();
         int randomIndex = random.nextInt(sizeMoves);
         return board.getEveryValidMove().get(randomIndex);
     }
+
+    /**
+     * ask a chooseMove running on another thread to return its best move so far.
+     * A random move is chosen at once, so there is nothing to stop here.
+     */
+    public void moveNow() {
+    }
 }
@@ -1,25 +1,49 @@
-public class Coordinate {
+public final class Coordinate {
+    private static final int CACHED = 8; // grid positions 0..7 on both axes are shared
+    private static final Coordinate[] GRID = new Coordinate[CACHED * CACHED];
 
-    public int x;
-    public int y;
+    static {
+        for (int y = 0; y < CACHED; y++) {
+            for (int x = 0; x < CACHED; x++) {
+                GRID[y * CACHED + x] = new Coordinate(x, y);
+            }
+        }
+    }
+
+    public final int x;
+    public final int y;
 
     /**
-     * describes a coordinate
+     * describes a coordinate, it can not change once made
      * @param x
      * @param y
      */
-    public Coordinate(int x, int y) {
+    private Coordinate(int x, int y) {
         this.x = x;
         this.y = y;
     }
 
     /**
-     * describes a coordinate that is the same as another coordinate
-     * @param coordinateOfOther
+     * get a coordinate. Grid positions of an 8x8 board are always the same object,
+     * so the board and players can hand them out without allocating.
+     * @param x
+     * @param y
+     * @return coordinate of x and y
      */
-    public Coordinate(Coordinate coordinateOfOther) {
-        this.x = coordinateOfOther.x;
-        this.y = coordinateOfOther.y;
+    public static Coordinate of(int x, int y) {
+        if (x >= 0 && y >= 0 && x < CACHED && y < CACHED) {
+            return GRID[y * CACHED + x];
+        }
+        return new Coordinate(x, y);
+    }
+
+    /**
+     * get the coordinate of a square index of an 8x8 board
+     * @param square index 0..63, y * 8 + x
+     * @return shared coordinate
+     */
+    public static Coordinate ofSquare(int square) {
+        return GRID[square];
     }
 
     /**
@@ -38,38 +62,29 @@ public class Coordinate {
         return this.y;
     }
 
-    /**
-     * set new coordinate values
-     * @param x
-     * @param y
-     */
-    public void setPosition(int x, int y) {
-        this.x = x;
-        this.y = y;
-    }
-
-    /**
-     * add this to otherCoordinate
-     * @param otherCoordinate
-     */
-    public void add(Coordinate otherCoordinate) {
-        this.x += otherCoordinate.x;
-        this.y += otherCoordinate.y;
-    }
-
     /**
      * Checks if this is equal to another coordinate
      * @param o
      * @return
      */
+    @Override
     public boolean equals(Object o) {
-        if (getClass() != o.getClass()) {
+        if (o == null || getClass() != o.getClass()) {
             return false;
         }
         Coordinate coordinate = (Coordinate) o;  // change type
         return x == coordinate.x && y == coordinate.y;
     }
 
+    /**
+     * hash matching equals
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
     /**
      * presents coordinate as a string
      * @return string form of coordinate
@@ -77,4 +92,4 @@ public class Coordinate {
     public String toString() {
         return "("+ x +","+ y +")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("othello.EndgameSolve")
+@Label("Endgame Solve")
+@Category({"Othello", "Search"})
+@Description("A perfect-play solve of the end of the game")
+public class EndgameSolveEvent extends Event {
+    @Label("Empties")
+    int empties;
+
+    @Label("Exact")
+    @Description("True for the exact disc difference, false for win, draw or loss only")
+    boolean exact;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    @Description("Final disc difference from the side to move, only the sign counts when not exact")
+    int score;
+
+    @Label("Aborted")
+    boolean aborted;
+}
@@ -0,0 +1,458 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class EndgameSolver {
+    public static final int NO_MOVE = -1;
+
+    private static final int MAX_SCORE = 64;
+    private static final int HASH_MIN_EMPTIES = 7;       // shallower nodes are cheaper to search than to look up
+    private static final int FASTEST_FIRST_MIN_EMPTIES = 7; // below this parity ordering is used instead
+    private static final int SMALL_EMPTIES = 4;            // solved by the allocation-free finisher
+    private static final int TIME_CHECK_INTERVAL = 4095;
+
+    // the four 4x4 corners of the board, for parity ordering
+    private static final long[] QUADRANTS = {
+            0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long LEFT_RIGHT_EDGES = 0x8181818181818181L;
+    private static final long TOP_BOTTOM_EDGES = 0xFF000000000000FFL;
+    private static final long NOT_LEFT = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_RIGHT = 0x7F7F7F7F7F7F7F7FL;
+
+    // rows, columns, diagonals and anti diagonals, for finding lines that are full
+    private static final long[] ROWS = new long[8];
+    private static final long[] COLUMNS = new long[8];
+    private static final long[] DIAGONALS = new long[15];
+    private static final long[] ANTI_DIAGONALS = new long[15];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int x = square % BitBoard.SIZE;
+            int y = square / BitBoard.SIZE;
+            ROWS[y] |= 1L << square;
+            COLUMNS[x] |= 1L << square;
+            DIAGONALS[x - y + 7] |= 1L << square;
+            ANTI_DIAGONALS[x + y] |= 1L << square;
+        }
+    }
+
+    private final EndgameTable table;
+    // move buffers per number of empties, so ordering never allocates; 64 holds any position, set up ones included
+    private final int[][] orderedMoves = new int[65][64];
+    private final long[][] orderedFlips = new long[65][64];
+    private final int[][] orderKeys = new int[65][64];
+
+    private AtomicBoolean stopSignal = new AtomicBoolean();
+    private long deadline = Long.MAX_VALUE;
+    private boolean aborted;
+    private long nodes;
+    private int score;
+    private int rootMove;
+
+    /**
+     * Describes a perfect-play solver for the end of the game
+     * @param hashSizeMB memory for the solver's own hash table
+     */
+    public EndgameSolver(int hashSizeMB) {
+        table = new EndgameTable(hashSizeMB);
+    }
+
+    /**
+     * share a stop flag with a search, setting it aborts the solve
+     * @param stopSignal flag checked while solving
+     */
+    public void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    /**
+     * forget every solved position
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Finds the move with the best final result.
+     * Both modes only run null-window searches: a win/loss/draw search first,
+     * then an exact solve bisects the remaining score range.
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param player 1 or 2, colour of own
+     * @param exact true for the exact final disc difference, false to only tell win, draw or loss
+     * @param deadline time in millis to give up at
+     * @return square index of the best move, NO_MOVE if there is no valid move or the solve was aborted
+     *         before any move was proven; after an abort see isSolved
+     */
+    public int findBestMove(long own, long opp, int player, boolean exact, long deadline) {
+        this.deadline = deadline;
+        aborted = false;
+        nodes = 0;
+        table.newSearch();
+
+        if (BitBoard.generateMoves(own, opp) == 0) {
+            return NO_MOVE;
+        }
+        EndgameSolveEvent event = new EndgameSolveEvent();
+        event.begin();
+        long hash = player == BitBoard.BLACK ? Zobrist.hash(own, opp, player) : Zobrist.hash(opp, own, player);
+        int lower = -MAX_SCORE;
+        int upper = MAX_SCORE;
+        int bestMove = NO_MOVE;
+
+        int value = solveRoot(own, opp, hash, player, -1, 1);
+        if (aborted) {
+            // nothing is proven by an unfinished pass
+        } else if (value >= 1) {
+            lower = value;
+            bestMove = rootMove;
+        } else if (value <= -1) {
+            upper = value;
+        } else {
+            lower = upper = 0;
+            bestMove = rootMove;
+        }
+        while (exact && lower < upper && !aborted) {
+            int test = Math.floorDiv(lower + upper, 2);
+            value = solveRoot(own, opp, hash, player, test, test + 1);
+            if (aborted) {
+                break;
+            }
+            if (value > test) {
+                lower = value;
+                bestMove = rootMove;
+            } else {
+                upper = value;
+            }
+        }
+        if (aborted) {
+            // a move proven to reach lower before the stop is still better than any guess
+            score = lower;
+        } else {
+            if (bestMove == NO_MOVE) {
+                // every search failed low, so no move does better than the others
+                bestMove = rootMove;
+            }
+            score = exact ? lower : value;
+        }
+        if (event.shouldCommit()) {
+            event.empties = Long.bitCount(~(own | opp));
+            event.exact = exact;
+            event.nodes = nodes;
+            event.bestMove = bestMove == NO_MOVE ? null : BitBoard.nameOf(bestMove);
+            event.score = bestMove == NO_MOVE ? 0 : score;
+            event.aborted = aborted;
+            event.commit();
+        }
+        return bestMove;
+    }
+
+    /**
+     * searches every root move inside alpha..beta, the best one is left in rootMove
+     * @return fail-soft score
+     */
+    private int solveRoot(long own, long opp, long hash, int player, int alpha, int beta) {
+        int empties = Long.bitCount(~(own | opp));
+        long entry = table.probe(hash);
+        int count = orderMoves(own, opp, BitBoard.generateMoves(own, opp), empties,
+                entry == EndgameTable.MISS ? NO_MOVE : EndgameTable.moveOf(entry));
+        int[] ordered = orderedMoves[empties];
+        rootMove = ordered[0];
+        int best = -MAX_SCORE - 1;
+        for (int i = 0; i < count; i++) {
+            int square = ordered[i];
+            long flips = orderedFlips[empties][i];
+            long childHash = hash ^ Zobrist.key(player, square) ^ Zobrist.flipKeys(flips) ^ Zobrist.WHITE_TO_MOVE;
+            int value = -solve(opp & ~flips, own | flips | (1L << square), childHash, BitBoard.opponentOf(player),
+                    empties - 1, -beta, -Math.max(alpha, best), false);
+            if (aborted) {
+                return 0;
+            }
+            if (value > best) {
+                best = value;
+                rootMove = square;
+                if (best >= beta) {
+                    break;
+                }
+            }
+        }
+        table.store(hash, empties, alpha, beta, best, rootMove);
+        return best;
+    }
+
+    /**
+     * check if the last solve finished.
+     * A solve stopped during the exact search still returns the move proven best so far,
+     * its score is then only a lower bound.
+     * @return false if the solve was stopped or ran out of time
+     */
+    public boolean isSolved() {
+        return !aborted;
+    }
+
+    /**
+     * get final disc difference of the last solve, from the side to move.
+     * In win/loss/draw mode only the sign is meaningful, after a stopped solve it is a lower bound.
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * get number of positions visited by the last solve
+     * @return nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * final disc difference of a position within alpha..beta, fail-soft
+     */
+    private int solve(long own, long opp, long hash, int player, int empties, int alpha, int beta, boolean passed) {
+        if ((++nodes & TIME_CHECK_INTERVAL) == 0 && (stopSignal.get() || System.currentTimeMillis() >= deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (empties <= SMALL_EMPTIES) {
+            return solveSmall(own, opp, ~(own | opp), alpha, beta, passed);
+        }
+
+        long moves = BitBoard.generateMoves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return Long.bitCount(own) - Long.bitCount(opp);
+            }
+            return -solve(opp, own, hash ^ Zobrist.WHITE_TO_MOVE, BitBoard.opponentOf(player), empties, -beta, -alpha, true);
+        }
+
+        // the opponent keeps its stable discs, which caps how well this can end
+        if (MAX_SCORE - 2 * Long.bitCount(opp) <= alpha) {
+            int limit = MAX_SCORE - 2 * Long.bitCount(stableDiscs(opp, own));
+            if (limit <= alpha) {
+                return limit;
+            }
+        }
+
+        int hashMove = NO_MOVE;
+        boolean hashed = empties >= HASH_MIN_EMPTIES;
+        if (hashed) {
+            long entry = table.probe(hash);
+            if (entry != EndgameTable.MISS) {
+                hashMove = EndgameTable.moveOf(entry);
+                int lower = EndgameTable.lowerOf(entry);
+                int upper = EndgameTable.upperOf(entry);
+                if (lower >= beta || lower == upper) {
+                    return lower;
+                }
+                if (upper <= alpha) {
+                    return upper;
+                }
+                alpha = Math.max(alpha, lower);
+                beta = Math.min(beta, upper);
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -MAX_SCORE - 1;
+        int bestMove = NO_MOVE;
+        int count = orderMoves(own, opp, moves, empties, hashMove);
+        int[] ordered = orderedMoves[empties];
+        long[] orderedFlips = this.orderedFlips[empties];
+        for (int i = 0; i < count; i++) {
+            int square = ordered[i];
+            long flips = orderedFlips[i];
+            long childOwn = opp & ~flips;
+            long childOpp = own | flips | (1L << square);
+            long childHash = hashed ? hash ^ Zobrist.key(player, square) ^ Zobrist.flipKeys(flips) ^ Zobrist.WHITE_TO_MOVE : 0L;
+            int value;
+            if (i == 0) {
+                value = -solve(childOwn, childOpp, childHash, BitBoard.opponentOf(player), empties - 1, -beta, -alpha, false);
+            } else {
+                // later moves only have to be proven worse than the best so far, re-search the ones that are not
+                value = -solve(childOwn, childOpp, childHash, BitBoard.opponentOf(player), empties - 1, -alpha - 1, -alpha, false);
+                if (value > alpha && value < beta) {
+                    value = -solve(childOwn, childOpp, childHash, BitBoard.opponentOf(player), empties - 1, -beta, -value, false);
+                }
+            }
+            if (value > best) {
+                best = value;
+                bestMove = square;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (hashed && !aborted) {
+            table.store(hash, empties, originalAlpha, beta, best, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * Fills the move buffer for this number of empties.
+     * The hash move goes first, then fastest-first (fewest replies for the opponent) when enough squares are empty,
+     * otherwise moves in quadrants with an odd number of empties first.
+     * @return number of moves
+     */
+    private int orderMoves(long own, long opp, long moves, int empties, int hashMove) {
+        int[] ordered = orderedMoves[empties];
+        long[] flipsOf = orderedFlips[empties];
+        int[] keys = orderKeys[empties];
+        long oddQuadrants = oddQuadrants(~(own | opp));
+        int count = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long bit = 1L << square;
+            long flips = BitBoard.computeFlips(square, own, opp);
+            int key;
+            if (square == hashMove) {
+                key = Integer.MIN_VALUE;
+            } else if (empties >= FASTEST_FIRST_MIN_EMPTIES) {
+                long childOpp = own | flips | bit;
+                long replies = BitBoard.generateMoves(opp & ~flips, childOpp);
+                key = (Long.bitCount(replies) + Long.bitCount(replies & CORNERS)) * 16
+                        + Long.bitCount(neighbours(childOpp) & ~(childOpp | opp))
+                        - ((bit & CORNERS) != 0 ? 8 : 0) - ((bit & oddQuadrants) != 0 ? 2 : 0);
+            } else {
+                key = (bit & oddQuadrants) != 0 ? 0 : 1;
+            }
+            // insertion sort, move lists are short
+            int i = count++;
+            while (i > 0 && keys[i - 1] > key) {
+                keys[i] = keys[i - 1];
+                ordered[i] = ordered[i - 1];
+                flipsOf[i] = flipsOf[i - 1];
+                i--;
+            }
+            keys[i] = key;
+            ordered[i] = square;
+            flipsOf[i] = flips;
+        }
+        return count;
+    }
+
+    /**
+     * Discs of own that can never be flipped: along each of the four lines through them the line is full,
+     * or one neighbour is the edge of the board or another stable disc of own.
+     */
+    private static long stableDiscs(long own, long opp) {
+        long occupied = own | opp;
+        long fullRows = fullLines(occupied, ROWS) | LEFT_RIGHT_EDGES;
+        long fullColumns = fullLines(occupied, COLUMNS) | TOP_BOTTOM_EDGES;
+        long fullDiagonals = fullLines(occupied, DIAGONALS) | LEFT_RIGHT_EDGES | TOP_BOTTOM_EDGES;
+        long fullAntiDiagonals = fullLines(occupied, ANTI_DIAGONALS) | LEFT_RIGHT_EDGES | TOP_BOTTOM_EDGES;
+
+        long stable = own & fullRows & fullColumns & fullDiagonals & fullAntiDiagonals;
+        while (stable != 0) {
+            long next = stable | (own
+                    & (fullRows | ((stable << 1) & NOT_LEFT) | ((stable >>> 1) & NOT_RIGHT))
+                    & (fullColumns | (stable << 8) | (stable >>> 8))
+                    & (fullDiagonals | ((stable << 9) & NOT_LEFT) | ((stable >>> 9) & NOT_RIGHT))
+                    & (fullAntiDiagonals | ((stable << 7) & NOT_RIGHT) | ((stable >>> 7) & NOT_LEFT)));
+            if (next == stable) {
+                break;
+            }
+            stable = next;
+        }
+        return stable;
+    }
+
+    /**
+     * union of the lines that have no empty square
+     */
+    private static long fullLines(long occupied, long[] lines) {
+        long full = 0L;
+        for (long line : lines) {
+            if ((occupied & line) == line) {
+                full |= line;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * every square next to a disc of discs, the opponent's potential moves when discs are own discs
+     */
+    private static long neighbours(long discs) {
+        return ((discs << 1) & NOT_LEFT) | ((discs >>> 1) & NOT_RIGHT) | (discs << 8) | (discs >>> 8)
+                | ((discs << 9) & NOT_LEFT) | ((discs >>> 9) & NOT_RIGHT) | ((discs << 7) & NOT_RIGHT) | ((discs >>> 7) & NOT_LEFT);
+    }
+
+    /**
+     * union of the quadrants holding an odd number of empty squares
+     */
+    private static long oddQuadrants(long empty) {
+        long odd = 0L;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Solves the last few empties straight from the empty mask, trying odd quadrants first.
+     * Nothing is allocated and no move list is generated.
+     */
+    private int solveSmall(long own, long opp, long empty, int alpha, int beta, boolean passed) {
+        nodes++;
+        if (empty == 0) {
+            return Long.bitCount(own) - Long.bitCount(opp);
+        }
+        if ((empty & (empty - 1)) == 0) {
+            return solveLast(own, opp, Long.numberOfTrailingZeros(empty));
+        }
+        long odd = oddQuadrants(empty);
+        int best = -MAX_SCORE - 1;
+        for (int pass = 0; pass < 2; pass++) {
+            long candidates = empty & (pass == 0 ? odd : ~odd);
+            for (; candidates != 0; candidates &= candidates - 1) {
+                int square = Long.numberOfTrailingZeros(candidates);
+                long flips = BitBoard.computeFlips(square, own, opp);
+                if (flips == 0) {
+                    continue;
+                }
+                int value = -solveSmall(opp & ~flips, own | flips | (1L << square), empty & ~(1L << square), -beta, -alpha, false);
+                if (value > best) {
+                    best = value;
+                    if (value > alpha) {
+                        alpha = value;
+                        if (alpha >= beta) {
+                            return best;
+                        }
+                    }
+                }
+            }
+        }
+        if (best == -MAX_SCORE - 1) {
+            if (passed) {
+                return Long.bitCount(own) - Long.bitCount(opp);
+            }
+            return -solveSmall(opp, own, empty, -beta, -alpha, true);
+        }
+        return best;
+    }
+
+    /**
+     * final disc difference with one empty square left
+     */
+    private int solveLast(long own, long opp, int square) {
+        long flips = BitBoard.computeFlips(square, own, opp);
+        if (flips != 0) {
+            return Long.bitCount(own) - Long.bitCount(opp) + 2 * Long.bitCount(flips) + 1;
+        }
+        flips = BitBoard.computeFlips(square, opp, own);
+        if (flips != 0) {
+            return Long.bitCount(own) - Long.bitCount(opp) - 2 * Long.bitCount(flips) - 1;
+        }
+        return Long.bitCount(own) - Long.bitCount(opp);
+    }
+}
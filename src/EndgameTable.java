@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+public class EndgameTable {
+    public static final long MISS = 0L;
+
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final int BOUND_OFFSET = 64; // bounds -64..64 are stored as 0..128
+    private static final long VALID = 1L << 40;
+
+    // data word layout: lower bound, upper bound, best move, empties, generation, valid bit
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation;
+
+    /**
+     * Describes the endgame solver's hash table.
+     * Each entry keeps both a lower and an upper bound on the final disc difference,
+     * so the null-window searches of an exact solve add to each other instead of overwriting.
+     * @param sizeMB memory to use, rounded down to a power of two number of entries
+     */
+    public EndgameTable(int sizeMB) {
+        long entries = Long.highestOneBit(Math.max(1L, (long) sizeMB * 1024 * 1024 / BYTES_PER_ENTRY));
+        entries = Math.min(entries, 1L << 30);
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        mask = (int) entries - 1;
+    }
+
+    /**
+     * mark entries of earlier solves as replaceable
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * remove every entry
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * look up a position
+     * @param hash of the position
+     * @return data word, or MISS
+     */
+    public long probe(long hash) {
+        int slot = (int) hash & mask;
+        return keys[slot] == hash ? data[slot] : MISS;
+    }
+
+    /**
+     * Stores the result of searching a position inside alpha..beta.
+     * A result below beta is an upper bound, a result above alpha a lower bound; both when it is inside the window.
+     * Bounds already known for the same position are kept.
+     * @param hash of the position
+     * @param empties number of empty squares
+     * @param alpha lower end of the search window
+     * @param beta upper end of the search window
+     * @param score fail-soft search result
+     * @param move best move square, or -1
+     */
+    public void store(long hash, int empties, int alpha, int beta, int score, int move) {
+        int slot = (int) hash & mask;
+        long stored = data[slot];
+        int lower = -BOUND_OFFSET;
+        int upper = BOUND_OFFSET;
+        if (keys[slot] == hash && stored != MISS) {
+            lower = lowerOf(stored);
+            upper = upperOf(stored);
+        } else if (stored != MISS && emptiesOf(stored) > empties && generationOf(stored) == generation) {
+            return; // keep the bigger subtree of this solve
+        }
+        if (score < beta) {
+            upper = Math.min(upper, score);
+        }
+        if (score > alpha) {
+            lower = Math.max(lower, score);
+        }
+        keys[slot] = hash;
+        data[slot] = (lower + BOUND_OFFSET) | ((long) (upper + BOUND_OFFSET) << 8) | ((long) (move & 0xFF) << 16)
+                | ((long) empties << 24) | ((long) generation << 32) | VALID;
+    }
+
+    public static int lowerOf(long entry) {
+        return (int) (entry & 0xFF) - BOUND_OFFSET;
+    }
+
+    public static int upperOf(long entry) {
+        return (int) ((entry >>> 8) & 0xFF) - BOUND_OFFSET;
+    }
+
+    /**
+     * get best move of an entry
+     * @param entry data word
+     * @return square index, or -1
+     */
+    public static int moveOf(long entry) {
+        int move = (int) (entry >>> 16) & 0xFF;
+        return move == 0xFF ? -1 : move;
+    }
+
+    private static int emptiesOf(long entry) {
+        return (int) (entry >>> 24) & 0xFF;
+    }
+
+    private static int generationOf(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+}
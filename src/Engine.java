@@ -0,0 +1,17 @@
+public interface Engine {
+
+    /**
+     * get ready for a new game
+     * @param seed for any random choices, so the game can be replayed
+     */
+    void newGame(long seed);
+
+    /**
+     * chooses a move for the player to move
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param player 1 - black, 2 - white
+     * @return square index of a valid move
+     */
+    int chooseMove(long own, long opp, int player);
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+public class EngineConfig {
+    private static final long DEFAULT_PLAYOUTS = 20000;
+    private String type = "search";
+    private long timeMillis = 0; // 0 searches to the depth limit however long it takes
+    private int depth = 6;
+    private int hashSizeMB = 4;
+    private int endgameEmpties = 0; // 0 plays the endgame with the midgame search
+    private String bookFile;
+    private String evalFile; // pattern weights, null for the built-in heuristic
+    private long playouts = 0; // playouts per move of an mcts engine, 0 for the time alone
+    private int rave = 0; // RAVE equivalence of an mcts engine, 0 for plain UCT
+    private boolean metrics; // count table use, cutoffs and endgame solves of a search engine
+
+    /**
+     * Reads an engine description such as "random",
+     * "search:depth=8,time=100,hash=16,endgame=16,book=book.bin,eval=eval.bin,metrics=1"
+     * or "mcts:time=100,playouts=20000,rave=1000,hash=16", where hash is the memory of the tree.
+     * @param spec engine type, optionally followed by a colon and comma separated settings
+     * @return config
+     */
+    public static EngineConfig parse(String spec) {
+        EngineConfig config = new EngineConfig();
+        int colon = spec.indexOf(':');
+        config.type = colon < 0 ? spec : spec.substring(0, colon);
+        if (!config.type.equals("search") && !config.type.equals("random") && !config.type.equals("mcts")) {
+            throw new IllegalArgumentException("unknown engine type " + config.type);
+        }
+        if (colon >= 0) {
+            for (String setting : spec.substring(colon + 1).split(",")) {
+                String[] pair = setting.split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("expected name=value but got " + setting);
+                }
+                switch (pair[0]) {
+                    case "time":
+                        config.timeMillis = Long.parseLong(pair[1]);
+                        break;
+                    case "depth":
+                        config.depth = Integer.parseInt(pair[1]);
+                        break;
+                    case "hash":
+                        config.hashSizeMB = Integer.parseInt(pair[1]);
+                        break;
+                    case "endgame":
+                        config.endgameEmpties = Integer.parseInt(pair[1]);
+                        break;
+                    case "book":
+                        config.bookFile = pair[1];
+                        break;
+                    case "eval":
+                        config.evalFile = pair[1];
+                        break;
+                    case "playouts":
+                        config.playouts = Long.parseLong(pair[1]);
+                        break;
+                    case "rave":
+                        config.rave = Integer.parseInt(pair[1]);
+                        break;
+                    case "metrics":
+                        config.metrics = Integer.parseInt(pair[1]) != 0;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown engine setting " + pair[0]);
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * creates a new engine with these settings, one per thread
+     * @return engine
+     * @throws IOException if the opening book or weights can not be read
+     */
+    public Engine createEngine() throws IOException {
+        if (type.equals("random")) {
+            return new RandomEngine();
+        }
+        if (type.equals("mcts")) {
+            long nodes = (long) hashSizeMB * 1024 * 1024 / MonteCarloSearch.BYTES_PER_NODE;
+            MonteCarloSearch search = new MonteCarloSearch(timeMillis > 0 ? timeMillis : Long.MAX_VALUE / 2,
+                    (int) Math.max(2, Math.min(Integer.MAX_VALUE, nodes)), 1);
+            // without either limit a move would never end
+            search.setMaxPlayouts(playouts > 0 ? playouts : timeMillis > 0 ? Long.MAX_VALUE : DEFAULT_PLAYOUTS);
+            search.setRaveEquivalence(rave);
+            return search;
+        }
+        Search search = new Search(timeMillis > 0 ? timeMillis : Long.MAX_VALUE / 2, new TranspositionTable(hashSizeMB));
+        search.setMaxDepth(depth);
+        if (endgameEmpties > 0) {
+            search.setEndgameSolver(new EndgameSolver(hashSizeMB));
+            search.setEndgameEmpties(endgameEmpties);
+        }
+        if (evalFile != null) {
+            search.setEvaluator(new PatternEvaluator(PatternWeights.load(Paths.get(evalFile))));
+        }
+        if (metrics) {
+            search.setMetrics(new SearchMetrics());
+        }
+        return new SearchEngine(search, bookFile == null ? null : OpeningBook.open(Paths.get(bookFile)));
+    }
+
+    /**
+     * get the time allowed per move
+     * @return milliseconds, 0 if only the depth limits the search
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        if (type.equals("random")) {
+            return type;
+        }
+        if (type.equals("mcts")) {
+            return type + ":time=" + timeMillis + ",playouts=" + playouts + ",rave=" + rave + ",hash=" + hashSizeMB;
+        }
+        return type + ":depth=" + depth + ",time=" + timeMillis + ",hash=" + hashSizeMB + ",endgame=" + endgameEmpties
+                + (bookFile == null ? "" : ",book=" + bookFile) + (evalFile == null ? "" : ",eval=" + evalFile)
+                + (metrics ? ",metrics=1" : "");
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class GameArchiveReader implements Closeable {
+    private static final int BLOCK_BYTES = 256 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final String[] players;
+
+    /**
+     * Describes a reader that streams the games of an archive through one block buffer,
+     * so archives far larger than the heap can be read.
+     * @param channel archive file open for reading
+     * @throws IOException if the file can not be read
+     */
+    private GameArchiveReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        block.flip(); // start empty
+        if (!fill(GameArchiveWriter.FIXED_HEADER_BYTES) || block.getInt() != GameArchiveWriter.MAGIC
+                || block.getInt() != GameArchiveWriter.VERSION) {
+            throw new IllegalArgumentException("not a game archive");
+        }
+        int length = block.getInt();
+        players = new String[block.getInt()];
+        if (!fill(length - GameArchiveWriter.FIXED_HEADER_BYTES)) {
+            throw new IllegalArgumentException("game archive header is truncated");
+        }
+        for (int i = 0; i < players.length; i++) {
+            byte[] name = new byte[block.get() & 0xFF];
+            block.get(name);
+            players[i] = new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * opens an archive at its first game
+     * @param path of the archive
+     * @return reader
+     * @throws IOException if the file can not be read
+     */
+    public static GameArchiveReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GameArchiveReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * get the names the games' player indexes refer to
+     * @return player names
+     */
+    public String[] getPlayers() {
+        return players.clone();
+    }
+
+    /**
+     * reads the next game into a record
+     * @param record filled with the game
+     * @return false at the end of the archive
+     * @throws IOException if the file can not be read
+     */
+    public boolean next(GameRecord record) throws IOException {
+        if (!fill(GameRecord.HEADER_BYTES)) {
+            if (block.hasRemaining()) {
+                throw new IllegalArgumentException("game archive ends inside a game");
+            }
+            return false;
+        }
+        int moves = record.decodeHeader(block);
+        if (!fill(moves)) {
+            throw new IllegalArgumentException("game archive ends inside a game");
+        }
+        record.decodeMoves(block);
+        return true;
+    }
+
+    /**
+     * make sure the block holds at least the given number of unread bytes, reading more of the file if needed
+     * @return false if the file ends first
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (block.remaining() >= bytes) {
+            return true;
+        }
+        block.compact();
+        while (block.position() < bytes) {
+            if (channel.read(block) < 0) {
+                break;
+            }
+        }
+        block.flip();
+        return block.remaining() >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Streams every game of an archive, then streams it again replaying each game through a Board
+     * and checking the final discs against the recorded result.
+     * Arguments: archive file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: GameArchiveReader <archive>");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        GameRecord record = new GameRecord();
+        long games = 0;
+        long moves = 0;
+        long start = System.nanoTime();
+        try (GameArchiveReader reader = open(path)) {
+            while (reader.next(record)) {
+                games++;
+                moves += record.getMoveCount();
+            }
+        }
+        long readNanos = System.nanoTime() - start;
+        System.out.printf("%,d games, %,d moves, read at %,.0f games/sec%n", games, moves, games * 1e9 / Math.max(1, readNanos));
+
+        Board board = new Board(Coordinate.of(0, 0), 400, 400, BitBoard.SIZE, BitBoard.SIZE);
+        long mismatches = 0;
+        start = System.nanoTime();
+        try (GameArchiveReader reader = open(path)) {
+            while (reader.next(record)) {
+                record.replay(board);
+                BitBoard discs = board.getBitBoard();
+                if (discs.count(BitBoard.BLACK) != record.getBlackDiscs() || discs.count(BitBoard.WHITE) != record.getWhiteDiscs()) {
+                    mismatches++;
+                }
+            }
+        }
+        long replayNanos = System.nanoTime() - start;
+        System.out.printf("replayed through Board at %,.0f games/sec, %d results differ%n",
+                games * 1e9 / Math.max(1, replayNanos), mismatches);
+    }
+}
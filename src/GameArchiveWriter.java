@@ -0,0 +1,165 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class GameArchiveWriter implements Closeable {
+    // file layout: magic, version, header length, player count, player names, then one game after another
+    static final int MAGIC = 0x31524147; // "GAR1"
+    static final int VERSION = 1;
+    static final int FIXED_HEADER_BYTES = 16;
+    private static final int BLOCK_BYTES = 256 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long games;
+
+    /**
+     * Describes a writer that collects games in a direct buffer and writes it to the file a block at a time.
+     * Not thread safe, writers shared between threads must be synchronized by the caller.
+     * @param channel file open for writing, positioned after the header
+     */
+    private GameArchiveWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * creates a new archive, replacing any file at the path
+     * @param path of the archive
+     * @param players names the games' player indexes refer to, at most 256
+     * @return writer
+     * @throws IOException if the file can not be written
+     */
+    public static GameArchiveWriter create(Path path, String[] players) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        GameArchiveWriter writer = new GameArchiveWriter(channel);
+        writer.putHeader(players);
+        return writer;
+    }
+
+    /**
+     * Opens an archive to add games at its end, creating it if there is none.
+     * When players adds names after those the archive was created with, the archive is rewritten
+     * with the longer list first; the indexes of the games already in it keep their meaning.
+     * @param path of the archive
+     * @param players names the games' player indexes refer to, the archive's names possibly followed by new ones
+     * @return writer
+     * @throws IOException if the file can not be read or written
+     * @throws IllegalArgumentException if the file is not an archive whose names start players
+     */
+    public static GameArchiveWriter append(Path path, String[] players) throws IOException {
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return create(path, players);
+        }
+        String[] existing;
+        try (GameArchiveReader reader = GameArchiveReader.open(path)) {
+            existing = reader.getPlayers();
+        }
+        if (!Arrays.equals(existing, players)) {
+            if (existing.length > players.length || !Arrays.equals(existing, Arrays.copyOf(players, existing.length))) {
+                throw new IllegalArgumentException(path + " was written for players " + Arrays.toString(existing)
+                        + ", new players can only be added after them");
+            }
+            addPlayers(path, existing, players);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new GameArchiveWriter(channel);
+    }
+
+    /**
+     * copies the games of an archive behind a header with more player names, then puts the copy in its place
+     */
+    private static void addPlayers(Path path, String[] existing, String[] players) throws IOException {
+        Path copy = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+             GameArchiveWriter writer = create(copy, players)) {
+            writer.flush();
+            long size = source.size();
+            for (long position = headerLength(existing); position < size; ) {
+                position += source.transferTo(position, size - position, writer.channel);
+            }
+        }
+        Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int headerLength(String[] players) {
+        int length = FIXED_HEADER_BYTES;
+        for (String player : players) {
+            length += 1 + player.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+
+    private void putHeader(String[] players) throws IOException {
+        if (players.length > 256) {
+            throw new IllegalArgumentException("at most 256 players, got " + players.length);
+        }
+        byte[][] names = new byte[players.length][];
+        for (int i = 0; i < players.length; i++) {
+            names[i] = players[i].getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 255) {
+                throw new IllegalArgumentException("player name longer than 255 bytes: " + players[i]);
+            }
+        }
+        int length = headerLength(players);
+        ensureRoom(length);
+        block.putInt(MAGIC).putInt(VERSION).putInt(length).putInt(players.length);
+        for (byte[] name : names) {
+            block.put((byte) name.length).put(name);
+        }
+    }
+
+    /**
+     * add a game to the archive
+     * @param record game to write
+     * @throws IOException if the file can not be written
+     */
+    public void write(GameRecord record) throws IOException {
+        ensureRoom(record.getEncodedLength());
+        record.encode(block);
+        games++;
+    }
+
+    /**
+     * get number of games written by this writer
+     * @return games
+     */
+    public long getGameCount() {
+        return games;
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (block.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * write every buffered game to the file
+     * @throws IOException if the file can not be written
+     */
+    public void flush() throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameLoadTest {
+    private static final int MAX_MOVES_PER_SESSION = 64;
+
+    private final int port;
+    private final int sessions;
+    private final long seed;
+    private final AtomicInteger nextSession = new AtomicInteger();
+    private final AtomicInteger moveCount = new AtomicInteger();
+    private final AtomicLong failures = new AtomicLong();
+    private final long[] latencies; // nanoseconds of each MOVE round trip
+
+    /**
+     * Describes a client that plays many games against a GameServer at once, random moves for the human side,
+     * and measures how long the server takes to answer each move, the engine's reply included.
+     * @param port of the server on localhost
+     * @param sessions number of games to play, one connection each
+     * @param seed of the random moves
+     */
+    public GameLoadTest(int port, int sessions, long seed) {
+        this.port = port;
+        this.sessions = sessions;
+        this.seed = seed;
+        latencies = new long[sessions * MAX_MOVES_PER_SESSION];
+    }
+
+    /**
+     * Plays every session with a number of clients connected at the same time.
+     * @param clients concurrent connections
+     * @return wall time in nanoseconds
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public long run(int clients) throws InterruptedException {
+        ExecutorService executor = GameServer.newVirtualThreadExecutor();
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(clients, runnable -> {
+                Thread thread = new Thread(runnable, "client");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> {
+                int session;
+                while ((session = nextSession.getAndIncrement()) < sessions) {
+                    try {
+                        playSession(session);
+                    } catch (IOException | RuntimeException e) {
+                        if (failures.getAndIncrement() == 0) {
+                            System.out.println("session " + session + " failed: " + e);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        return System.nanoTime() - start;
+    }
+
+    private void playSession(int session) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed + session);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            request(in, out, session % 2 == 0 ? "NEW black" : "NEW white");
+            while (true) {
+                String[] moves = request(in, out, "MOVES").split(" ");
+                if (moves.length == 1) {
+                    break; // just "OK", the game is over
+                }
+                String move = moves[1 + random.nextInt(moves.length - 1)];
+                long sent = System.nanoTime();
+                request(in, out, "MOVE " + move);
+                latencies[moveCount.getAndIncrement()] = System.nanoTime() - sent;
+            }
+            String[] state = request(in, out, "STATE").split(" ");
+            if (!state[2].equals("-")) {
+                throw new IllegalStateException("no moves but the game is not over: " + String.join(" ", state));
+            }
+            request(in, out, "QUIT");
+        }
+    }
+
+    private static String request(BufferedReader in, BufferedWriter out, String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("connection closed after " + command);
+        }
+        if (!reply.startsWith("OK")) {
+            throw new IllegalStateException(command + " -> " + reply);
+        }
+        return reply;
+    }
+
+    /**
+     * get a latency percentile of the moves played so far
+     * @param percentile 0..100
+     * @return milliseconds
+     */
+    public double latencyMillis(double percentile) {
+        int count = moveCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+
+    /**
+     * Plays games against a running GameServer and prints latency and throughput.
+     * Arguments: [port] [sessions] [concurrent clients] [seed]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        GameLoadTest test = new GameLoadTest(port, sessions, seed);
+        long nanos = test.run(clients);
+        double seconds = nanos / 1e9;
+        int moves = test.moveCount.get();
+        System.out.printf("%d sessions, %d clients, %d failed, %.1f s%n", sessions, clients, test.failures.get(), seconds);
+        System.out.printf("%.1f sessions/sec, %.0f moves/sec%n", (sessions - test.failures.get()) / seconds, moves / seconds);
+        System.out.printf("move latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                test.latencyMillis(50), test.latencyMillis(99), test.latencyMillis(100));
+    }
+}
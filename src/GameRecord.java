@@ -0,0 +1,207 @@
+import java.nio.ByteBuffer;
+
+public class GameRecord {
+    public static final int PASS = 64; // stored in place of a square when a player has to pass
+    public static final int MAX_MOVES = 128; // 60 moves and room for every pass
+
+    // archive layout of one game: seed, black player, white player, black discs, white discs, move count, moves
+    static final int HEADER_BYTES = 13;
+
+    private long seed;
+    private int blackPlayer;
+    private int whitePlayer;
+    private int blackDiscs;
+    private int whiteDiscs;
+    private final byte[] moves = new byte[MAX_MOVES];
+    private int moveCount;
+    private int lastPlayer; // player of the last move added, 0 at the start
+
+    /**
+     * Describes one game as a move per byte plus who played it and how it ended.
+     * A record is meant to be reused: clear it for the next game, or let a reader fill it.
+     */
+    public GameRecord() {
+    }
+
+    /**
+     * forget the moves and result, ready for a new game
+     */
+    public void clear() {
+        seed = 0L;
+        blackDiscs = 0;
+        whiteDiscs = 0;
+        moveCount = 0;
+        lastPlayer = 0;
+    }
+
+    /**
+     * add a move, with a pass in front of it when the same player also made the previous move
+     * @param square index 0..63
+     * @param player 1 - black, 2 - white
+     */
+    public void addMove(int square, int player) {
+        if (player == lastPlayer || (lastPlayer == 0 && player == BitBoard.WHITE)) {
+            addPass();
+        }
+        moves[moveCount++] = (byte) square;
+        lastPlayer = player;
+    }
+
+    /**
+     * add a pass of the player to move
+     */
+    public void addPass() {
+        moves[moveCount++] = PASS;
+        lastPlayer = lastPlayer == 0 ? BitBoard.BLACK : BitBoard.opponentOf(lastPlayer);
+    }
+
+    /**
+     * Plays the game through a board from the start position, passing where the record passes.
+     * @param board 8x8 board, its game is replaced
+     * @throws IllegalStateException if a move is not valid
+     */
+    public void replay(Board board) {
+        board.restart();
+        int player = BitBoard.BLACK;
+        for (int i = 0; i < moveCount; i++) {
+            int move = moves[i];
+            if (move == PASS) {
+                player = BitBoard.opponentOf(player);
+                board.updateValidMoves(player);
+                continue;
+            }
+            if (!board.isValidMove(move)) {
+                throw new IllegalStateException("move " + i + " " + BitBoard.nameOf(move) + " is not valid");
+            }
+            board.playMove(move, player);
+            player = BitBoard.opponentOf(player);
+        }
+    }
+
+    /**
+     * the moves in square names, "--" for a pass
+     * @return moves such as "f5d6c3"
+     */
+    public String getMoveText() {
+        StringBuilder text = new StringBuilder(2 * moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            text.append(moves[i] == PASS ? "--" : BitBoard.nameOf(moves[i]));
+        }
+        return text.toString();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * set who played, as indexes into the player names of the archive
+     * @param blackPlayer player of black, 0..255
+     * @param whitePlayer player of white, 0..255
+     */
+    public void setPlayers(int blackPlayer, int whitePlayer) {
+        this.blackPlayer = blackPlayer;
+        this.whitePlayer = whitePlayer;
+    }
+
+    public int getBlackPlayer() {
+        return blackPlayer;
+    }
+
+    public int getWhitePlayer() {
+        return whitePlayer;
+    }
+
+    /**
+     * set the final disc counts
+     * @param blackDiscs discs of black at the end
+     * @param whiteDiscs discs of white at the end
+     */
+    public void setResult(int blackDiscs, int whiteDiscs) {
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+    }
+
+    public int getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    public int getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * get a move
+     * @param index 0..moveCount-1
+     * @return square index, or PASS
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * get number of moves that are not passes
+     * @return discs placed
+     */
+    public int getDiscsPlaced() {
+        int placed = 0;
+        for (int i = 0; i < moveCount; i++) {
+            if (moves[i] != PASS) {
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * get size of this game in an archive
+     * @return bytes
+     */
+    int getEncodedLength() {
+        return HEADER_BYTES + moveCount;
+    }
+
+    /**
+     * write this game at the buffer's position
+     * @param buffer little-endian buffer with at least getEncodedLength bytes remaining
+     */
+    void encode(ByteBuffer buffer) {
+        buffer.putLong(seed).put((byte) blackPlayer).put((byte) whitePlayer).put((byte) blackDiscs)
+                .put((byte) whiteDiscs).put((byte) moveCount).put(moves, 0, moveCount);
+    }
+
+    /**
+     * read the fixed part of a game, the moves follow with decodeMoves
+     * @param buffer little-endian buffer with at least HEADER_BYTES bytes remaining
+     * @return number of moves still to read
+     */
+    int decodeHeader(ByteBuffer buffer) {
+        seed = buffer.getLong();
+        blackPlayer = buffer.get() & 0xFF;
+        whitePlayer = buffer.get() & 0xFF;
+        blackDiscs = buffer.get() & 0xFF;
+        whiteDiscs = buffer.get() & 0xFF;
+        moveCount = buffer.get() & 0xFF;
+        if (moveCount > MAX_MOVES) {
+            throw new IllegalArgumentException("game archive is corrupt: " + moveCount + " moves");
+        }
+        lastPlayer = 0;
+        return moveCount;
+    }
+
+    /**
+     * read the moves of a game after decodeHeader
+     * @param buffer little-endian buffer with at least the move count remaining
+     */
+    void decodeMoves(ByteBuffer buffer) {
+        buffer.get(moves, 0, moveCount);
+    }
+}
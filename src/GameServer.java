@@ -0,0 +1,336 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameServer implements Closeable {
+    public static final int DEFAULT_PORT = 5055;
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    private final ExecutorService sessions;
+    private final boolean virtualThreads;
+    private final ExecutorService engines; // bounded pool every engine search runs on
+    private final ThreadLocal<Engine> workerEngine; // one engine per pool thread, reused by every game
+    private volatile ServerSocket serverSocket;
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong sessionsServed = new AtomicLong();
+    private final AtomicLong gamesFinished = new AtomicLong();
+    private final AtomicLong enginesMoves = new AtomicLong();
+
+    /**
+     * Describes a headless server playing engine-against-human games over a line-based TCP protocol.
+     * Every connection is a session on its own thread, a virtual thread when the JVM has them,
+     * and the sessions queue their engine searches on a fixed pool so the CPU is never oversubscribed.
+     * Commands, one per line, each answered with one line starting with OK or ERR:
+     * <pre>
+     * NEW [black|white]  start a game with the human playing that colour, black by default; OK and the engine's moves
+     * MOVE d3            play a move for the human; OK and the engine's moves in reply, "-" when there were none
+     * MOVES              OK and the human's legal moves, none when the game is over
+     * STATE              OK, the 64 squares a1..h8 as X, O or -, the side to move X, O or - when over, black and white discs
+     * QUIT               OK and the connection is closed
+     * </pre>
+     * The server passes for a player without a legal move, so the human is never asked to move without one.
+     * @param engineConfig engine of every game
+     * @param engineThreads size of the search pool
+     * @throws IOException if the engine can not be created
+     */
+    public GameServer(EngineConfig engineConfig, int engineThreads) throws IOException {
+        engineConfig.createEngine(); // fail now rather than in the first game
+        workerEngine = ThreadLocal.withInitial(() -> {
+            try {
+                return engineConfig.createEngine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        engines = Executors.newFixedThreadPool(Math.max(1, engineThreads), runnable -> {
+            Thread thread = new Thread(runnable, "engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        sessions = virtual != null ? virtual : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "session");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Makes an executor that starts a virtual thread per task.
+     * Virtual threads came with JDK 21, so the method is looked up at run time and this still runs on older JVMs.
+     * @return executor, or null if the JVM has no virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * check what the sessions run on
+     * @return true for virtual threads, false for a pool of platform threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Accepts connections on a localhost port until the server is closed.
+     * @param port to listen on, 0 for any free port
+     * @throws IOException if the port can not be opened
+     */
+    public void serve(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> runSession(socket));
+            }
+        } catch (SocketException e) {
+            if (!serverSocket.isClosed()) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * get the port being listened on
+     * @return port, or -1 before serve has opened it
+     */
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket == null ? -1 : socket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        sessions.shutdownNow();
+        engines.shutdownNow();
+    }
+
+    /**
+     * answers the commands of one connection until it sends QUIT or closes
+     */
+    private void runSession(Socket socket) {
+        activeSessions.incrementAndGet();
+        sessionsServed.incrementAndGet();
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.US_ASCII))) {
+            connection.setTcpNoDelay(true);
+            Session session = new Session();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String reply;
+                try {
+                    reply = session.handle(line.trim());
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    reply = "ERR " + e.getMessage();
+                }
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+                if (reply.equals("OK bye")) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // the client went away, nothing to answer
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * asks a pool engine for a move and waits for it, the session thread does not search itself
+     */
+    private int engineMove(long own, long opp, int player) {
+        Future<Integer> move = engines.submit(() -> workerEngine.get().chooseMove(own, opp, player));
+        try {
+            return move.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            move.cancel(true);
+            throw new IllegalStateException("interrupted while the engine was thinking");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("engine failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * The game of one connection.
+     */
+    private class Session {
+        private long black;
+        private long white;
+        private int toMove; // 0 before the first game and once the game is over
+        private int human;
+        private boolean started;
+
+        String handle(String line) {
+            String[] words = line.split("\\s+");
+            switch (words[0].toUpperCase()) {
+                case "NEW":
+                    human = words.length < 2 || words[1].equalsIgnoreCase("black") ? BitBoard.BLACK : BitBoard.WHITE;
+                    if (words.length > 1 && human == BitBoard.WHITE && !words[1].equalsIgnoreCase("white")) {
+                        throw new IllegalArgumentException("colour must be black or white");
+                    }
+                    black = BitBoard.START_BLACK;
+                    white = BitBoard.START_WHITE;
+                    toMove = BitBoard.BLACK;
+                    started = true;
+                    return "OK" + engineReplies();
+                case "MOVE":
+                    if (words.length < 2) {
+                        throw new IllegalArgumentException("MOVE needs a square");
+                    }
+                    checkHumanToMove();
+                    int square = BitBoard.parseSquare(words[1]);
+                    if ((moves() & (1L << square)) == 0) {
+                        throw new IllegalArgumentException("illegal move " + words[1]);
+                    }
+                    play(square);
+                    return "OK" + engineReplies();
+                case "MOVES":
+                    checkStarted();
+                    StringBuilder reply = new StringBuilder("OK");
+                    if (toMove == human) {
+                        for (long legal = moves(); legal != 0; legal &= legal - 1) {
+                            reply.append(' ').append(BitBoard.nameOf(Long.numberOfTrailingZeros(legal)));
+                        }
+                    }
+                    return reply.toString();
+                case "STATE":
+                    checkStarted();
+                    return "OK " + squares() + " " + (toMove == BitBoard.BLACK ? "X" : toMove == BitBoard.WHITE ? "O" : "-")
+                            + " " + Long.bitCount(black) + " " + Long.bitCount(white);
+                case "QUIT":
+                    return "OK bye";
+                default:
+                    throw new IllegalArgumentException("unknown command " + words[0]);
+            }
+        }
+
+        private void checkStarted() {
+            if (!started) {
+                throw new IllegalStateException("no game, send NEW");
+            }
+        }
+
+        private void checkHumanToMove() {
+            checkStarted();
+            if (toMove == 0) {
+                throw new IllegalStateException("the game is over");
+            }
+        }
+
+        private long moves() {
+            return toMove == BitBoard.BLACK ? BitBoard.generateMoves(black, white) : BitBoard.generateMoves(white, black);
+        }
+
+        /**
+         * plays a legal move for the side to move, then passes for the next side if it has to, or ends the game
+         */
+        private void play(int square) {
+            if (toMove == BitBoard.BLACK) {
+                long flips = BitBoard.computeFlips(square, black, white);
+                black |= flips | (1L << square);
+                white &= ~flips;
+            } else {
+                long flips = BitBoard.computeFlips(square, white, black);
+                white |= flips | (1L << square);
+                black &= ~flips;
+            }
+            toMove = BitBoard.opponentOf(toMove);
+            if (moves() == 0) {
+                toMove = BitBoard.opponentOf(toMove);
+                if (moves() == 0) {
+                    toMove = 0;
+                    gamesFinished.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * lets the engine move while it is its turn
+         * @return the engine's moves, each after a space, or " -" if it did not move
+         */
+        private String engineReplies() {
+            StringBuilder replies = new StringBuilder();
+            while (toMove != 0 && toMove != human) {
+                int square = toMove == BitBoard.BLACK ? engineMove(black, white, toMove) : engineMove(white, black, toMove);
+                play(square);
+                enginesMoves.incrementAndGet();
+                replies.append(' ').append(BitBoard.nameOf(square));
+            }
+            return replies.length() == 0 ? " -" : replies.toString();
+        }
+
+        private String squares() {
+            StringBuilder squares = new StringBuilder(64);
+            for (int square = 0; square < 64; square++) {
+                long bit = 1L << square;
+                squares.append((black & bit) != 0 ? 'X' : (white & bit) != 0 ? 'O' : '-');
+            }
+            return squares.toString();
+        }
+    }
+
+    /**
+     * Serves games on localhost until the process is stopped, printing the load every few seconds.
+     * Arguments: [port] [engine] [engine threads]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        EngineConfig engine = EngineConfig.parse(args.length > 1 ? args[1] : "search:depth=4");
+        int engineThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        GameServer server = new GameServer(engine, engineThreads);
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.serve(port);
+            } catch (IOException e) {
+                System.out.println("server stopped: " + e.getMessage());
+            }
+        }, "accept");
+        acceptor.start();
+        while (server.getPort() < 0 && acceptor.isAlive()) {
+            Thread.sleep(10);
+        }
+        System.out.println("serving " + engine + " on localhost:" + server.getPort() + ", " + engineThreads
+                + " engine threads, sessions on " + (server.usesVirtualThreads() ? "virtual threads" : "platform threads"));
+
+        long start = System.currentTimeMillis();
+        long lastMoves = 0;
+        while (acceptor.isAlive()) {
+            acceptor.join(PROGRESS_INTERVAL_MILLIS);
+            long moves = server.enginesMoves.get();
+            System.out.printf("%6.0f s: %d active sessions, %d served, %d games finished, %.0f engine moves/sec%n",
+                    (System.currentTimeMillis() - start) / 1000.0, server.activeSessions.get(), server.sessionsServed.get(),
+                    server.gamesFinished.get(), (moves - lastMoves) * 1000.0 / PROGRESS_INTERVAL_MILLIS);
+            lastMoves = moves;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+public class MonteCarloPlayer extends ComputerPlayer {
+    private final MonteCarloSearch search;
+
+    /**
+     * Describes a computer player that chooses its move by Monte Carlo tree search.
+     * Its trees are kept from one move to the next, so the playouts below the position reached are not lost.
+     * @param board the game is played on
+     * @param timeBudgetMillis time allowed per move
+     * @param memoryMB memory for the trees of all threads together
+     * @param threads number of search threads, each growing its own tree
+     * @param raveEquivalence see MonteCarloTree.setRaveEquivalence, 0 for plain UCT
+     */
+    public MonteCarloPlayer(Board board, long timeBudgetMillis, int memoryMB, int threads, int raveEquivalence) {
+        super(board);
+        long nodes = (long) memoryMB * 1024 * 1024 / MonteCarloSearch.BYTES_PER_NODE / Math.max(1, threads);
+        search = new MonteCarloSearch(timeBudgetMillis, (int) Math.max(2, Math.min(Integer.MAX_VALUE, nodes)), threads);
+        search.setRaveEquivalence(raveEquivalence);
+    }
+
+    public MonteCarloSearch getSearch() {
+        return search;
+    }
+
+    /**
+     * stop the running search and play the move visited most so far
+     */
+    @Override
+    public void moveNow() {
+        search.stop();
+    }
+
+    /**
+     * Chooses a move with Monte Carlo tree search for the player whose valid moves are on the board.
+     * Playouts and win rate of the search are left in getSearch() for the caller to show.
+     *
+     * @return The move played most in the playouts as a Coordinate object.
+     */
+    @Override
+    public Coordinate chooseMove() {
+        BitBoard bitBoard = board.getBitBoard();
+        if (bitBoard == null) {
+            return super.chooseMove();
+        }
+        int player = board.getCurrentPlayer();
+        int square = search.findBestMove(bitBoard.getDiscs(player), bitBoard.getDiscs(BitBoard.opponentOf(player)), player);
+        if (square == MonteCarloSearch.NO_MOVE) {
+            return super.chooseMove();
+        }
+        return board.getCoordinate(square);
+    }
+}
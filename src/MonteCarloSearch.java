@@ -0,0 +1,288 @@
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MonteCarloSearch implements Engine {
+    public static final int NO_MOVE = -1;
+    public static final int BYTES_PER_NODE = 48; // a node, its spare copy and its place in the packing queue
+
+    private final MonteCarloTree[] trees;
+    private final Future<?>[] running;
+    private final ExecutorService helpers; // null with a single thread
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+    private long timeBudgetMillis;
+    private long maxPlayouts = Long.MAX_VALUE;
+
+    private long playouts;
+    private long elapsedMillis;
+    private double winRate;
+    private int reusedVisits;
+
+    /**
+     * Describes a root-parallel Monte Carlo tree search: every thread grows its own tree from the same root
+     * with its own random numbers, and the visits of the root moves are added up to choose the move.
+     * The trees share nothing while searching, so threads never wait on each other.
+     * The calling thread searches the first tree.
+     * @param timeBudgetMillis time allowed per move
+     * @param nodesPerTree most nodes in each thread's tree
+     * @param threads number of search threads, 1 or more
+     */
+    public MonteCarloSearch(long timeBudgetMillis, int nodesPerTree, int threads) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        threads = Math.max(1, threads);
+        trees = new MonteCarloTree[threads];
+        running = new Future<?>[threads];
+        SplittableRandom seeds = new SplittableRandom();
+        for (int i = 0; i < threads; i++) {
+            trees[i] = new MonteCarloTree(nodesPerTree, seeds.split());
+        }
+        if (threads > 1) {
+            helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "mcts-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * limit the playouts of a move, shared out evenly over the threads
+     * @param maxPlayouts playouts per move, Long.MAX_VALUE for the time budget alone
+     */
+    public void setMaxPlayouts(long maxPlayouts) {
+        this.maxPlayouts = maxPlayouts;
+    }
+
+    /**
+     * blend RAVE into every tree
+     * @param raveEquivalence see MonteCarloTree.setRaveEquivalence, 0 for plain UCT
+     */
+    public void setRaveEquivalence(int raveEquivalence) {
+        for (MonteCarloTree tree : trees) {
+            tree.setRaveEquivalence(raveEquivalence);
+        }
+    }
+
+    /**
+     * set the UCT exploration constant of every tree
+     * @param exploration about 1 for scores from 0 to 1
+     */
+    public void setExploration(double exploration) {
+        for (MonteCarloTree tree : trees) {
+            tree.setExploration(exploration);
+        }
+    }
+
+    /**
+     * Forgets the trees and seeds the random numbers, so a game only depends on its own moves and the seed.
+     */
+    @Override
+    public void newGame(long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (MonteCarloTree tree : trees) {
+            tree.clear(seeds.split());
+        }
+    }
+
+    @Override
+    public int chooseMove(long own, long opp, int player) {
+        return findBestMove(own, opp, player);
+    }
+
+    /**
+     * Grows every tree until the time budget or the playout limit runs out, reusing what the trees
+     * already know of the position, and plays the move visited most over all trees.
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param player 1 or 2, colour of own
+     * @return square index of the best move, or NO_MOVE if there is no valid move
+     */
+    public int findBestMove(long own, long opp, int player) {
+        long start = System.currentTimeMillis();
+        long moves = BitBoard.generateMoves(own, opp);
+        playouts = 0;
+        winRate = 0;
+        reusedVisits = 0;
+        if (moves == 0) {
+            elapsedMillis = 0;
+            return NO_MOVE;
+        }
+        long black = player == BitBoard.BLACK ? own : opp;
+        long white = player == BitBoard.BLACK ? opp : own;
+        long deadline = start + timeBudgetMillis;
+        long treePlayouts = maxPlayouts == Long.MAX_VALUE ? Long.MAX_VALUE : (maxPlayouts + trees.length - 1) / trees.length;
+        stopSignal.set(false);
+        for (int i = 1; i < trees.length; i++) {
+            MonteCarloTree tree = trees[i];
+            running[i] = helpers.submit(() -> {
+                tree.setRoot(black, white, player);
+                tree.search(deadline, treePlayouts, stopSignal);
+            });
+        }
+        trees[0].setRoot(black, white, player);
+        reusedVisits = trees[0].getRootVisits();
+        trees[0].search(deadline, treePlayouts, stopSignal);
+
+        stopSignal.set(true);
+        for (int i = 1; i < trees.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("search helper failed", e.getCause());
+            }
+        }
+
+        int bestMove = Long.numberOfTrailingZeros(moves);
+        long bestVisits = -1;
+        long bestScore = 0;
+        for (long remaining = moves; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            long visits = 0;
+            long score = 0;
+            for (MonteCarloTree tree : trees) {
+                visits += tree.getRootVisits(square);
+                score += tree.getRootScore(square);
+            }
+            if (visits > bestVisits || (visits == bestVisits && score > bestScore)) {
+                bestMove = square;
+                bestVisits = visits;
+                bestScore = score;
+            }
+        }
+        for (MonteCarloTree tree : trees) {
+            playouts += tree.getPlayouts();
+        }
+        winRate = bestVisits > 0 ? bestScore / (2.0 * bestVisits) : 0;
+        elapsedMillis = System.currentTimeMillis() - start;
+        return bestMove;
+    }
+
+    /**
+     * ask a running search to return its best move so far
+     */
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    /**
+     * stop the helper threads, the search can not be used afterwards
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    public int getThreads() {
+        return trees.length;
+    }
+
+    /**
+     * get number of random games played by all threads in the last search
+     * @return playouts
+     */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * get search speed of all threads in the last search
+     * @return playouts per second
+     */
+    public long getPlayoutsPerSecond() {
+        return playouts * 1000 / Math.max(1, elapsedMillis);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * get how often the chosen move won its playouts
+     * @return 0..1, draws count half
+     */
+    public double getWinRate() {
+        return winRate;
+    }
+
+    /**
+     * get the playouts the first tree kept from earlier moves
+     * @return root visits before the last search, 0 when the tree started empty
+     */
+    public int getReusedVisits() {
+        return reusedVisits;
+    }
+
+    /**
+     * Measures playouts per second from fixed midgame positions with 1, 2, 4 ... threads.
+     * Arguments: [max threads] [milliseconds per position] [rave equivalence]
+     */
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int rave = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        int positions = 8;
+        long[][] roots = new long[positions][];
+        Random random = new Random(20);
+        for (int i = 0; i < positions; i++) {
+            roots[i] = randomPosition(random, 20);
+        }
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            MonteCarloSearch search = new MonteCarloSearch(millis, 1 << 20, threads);
+            search.setRaveEquivalence(rave);
+            long totalPlayouts = 0;
+            long totalMillis = 0;
+            for (long[] root : roots) {
+                search.newGame(1);
+                search.findBestMove(root[0], root[1], (int) root[2]);
+                totalPlayouts += search.getPlayouts();
+                totalMillis += search.getElapsedMillis();
+            }
+            search.shutdown();
+            System.out.printf("%2d threads: %,d playouts/sec%n", threads, totalPlayouts * 1000 / Math.max(1, totalMillis));
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * plays random moves from the start position
+     * @return own, opp and player to move
+     */
+    private static long[] randomPosition(Random random, int plies) {
+        long own = BitBoard.START_BLACK;
+        long opp = BitBoard.START_WHITE;
+        int player = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = BitBoard.generateMoves(own, opp);
+            if (moves != 0) {
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                int square = Long.numberOfTrailingZeros(moves);
+                long flips = BitBoard.computeFlips(square, own, opp);
+                own |= flips | (1L << square);
+                opp &= ~flips;
+            }
+            long swap = own;
+            own = opp;
+            opp = swap;
+            player = BitBoard.opponentOf(player);
+        }
+        return new long[]{own, opp, player};
+    }
+}
@@ -0,0 +1,448 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MonteCarloTree {
+    public static final int PASS = 64; // move of a node reached by passing
+    private static final int UNEXPANDED = -1;
+    private static final int TERMINAL = -2; // firstChild of a finished game
+    private static final int MAX_PATH = 128; // every ply places a disc or passes, and two passes end the game
+    private static final int CLOCK_CHECK_INTERVAL = 63; // look at the clock every 64 playouts
+
+    // the nodes, one array per field so a node costs no object; children of a node are next to each other
+    private byte[] move;
+    private int[] firstChild;
+    private byte[] childCount;
+    private int[] visits;
+    private int[] score;       // half points of the player who made the move: 2 a win, 1 a draw
+    private int[] raveVisits;  // playouts in which the mover played this move later on
+    private int[] raveScore;
+    private int size;
+
+    // the tree the next search keeps is copied here, so a reused tree is packed again and the pool never leaks
+    private byte[] spareMove;
+    private int[] spareFirstChild;
+    private byte[] spareChildCount;
+    private int[] spareVisits;
+    private int[] spareScore;
+    private int[] spareRaveVisits;
+    private int[] spareRaveScore;
+    private final int[] queue;
+
+    private SplittableRandom random;
+    private double exploration = 1.0;
+    private int raveEquivalence = 0; // 0 plays plain UCT
+
+    private long rootBlack;
+    private long rootWhite;
+    private int rootPlayer;
+    private boolean hasRoot;
+    private long playouts;
+    private boolean reused;
+
+    // the path of the running playout
+    private final int[] pathNode = new int[MAX_PATH];
+    private final int[] pathPlayer = new int[MAX_PATH];
+
+    /**
+     * Describes one Monte Carlo search tree, UCT with optional RAVE, kept in preallocated arrays.
+     * Each playout walks down the tree, adds the children of the leaf it reaches, plays random moves
+     * to the end of the game on bitboards and counts the result on the way back up.
+     * @param capacity most nodes the tree holds, twice as many are allocated to repack a reused tree
+     * @param random of this tree alone, one per thread
+     */
+    public MonteCarloTree(int capacity, SplittableRandom random) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("a tree needs room for at least 2 nodes");
+        }
+        move = new byte[capacity];
+        firstChild = new int[capacity];
+        childCount = new byte[capacity];
+        visits = new int[capacity];
+        score = new int[capacity];
+        raveVisits = new int[capacity];
+        raveScore = new int[capacity];
+        spareMove = new byte[capacity];
+        spareFirstChild = new int[capacity];
+        spareChildCount = new byte[capacity];
+        spareVisits = new int[capacity];
+        spareScore = new int[capacity];
+        spareRaveVisits = new int[capacity];
+        spareRaveScore = new int[capacity];
+        queue = new int[capacity];
+        this.random = random;
+    }
+
+    /**
+     * set how much the search tries moves that have been played less
+     * @param exploration UCT constant, about 1 for scores from 0 to 1
+     */
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    /**
+     * Blend in all-moves-as-first statistics: a move is credited by every playout in which the same player
+     * played it later on, so new nodes get a useful value quickly. The blend fades out as the node is visited.
+     * @param raveEquivalence visits at which the RAVE and the normal value weigh about the same, 0 for plain UCT
+     */
+    public void setRaveEquivalence(int raveEquivalence) {
+        this.raveEquivalence = raveEquivalence;
+    }
+
+    /**
+     * forget the tree and start drawing random numbers afresh
+     * @param random of this tree alone
+     */
+    public void clear(SplittableRandom random) {
+        this.random = random;
+        hasRoot = false;
+    }
+
+    /**
+     * Makes the position the root. When it follows from the old root within a few plies,
+     * the nodes below it are kept and packed to the front of the pool, otherwise the tree starts empty.
+     * @param black discs of black
+     * @param white discs of white
+     * @param player 1 or 2, the player to move
+     */
+    public void setRoot(long black, long white, int player) {
+        int kept = hasRoot ? find(0, rootBlack, rootWhite, rootPlayer, black, white, player, 4) : -1;
+        reused = kept >= 0;
+        if (reused) {
+            pack(kept);
+        } else {
+            size = 0;
+            newNode(PASS);
+        }
+        rootBlack = black;
+        rootWhite = white;
+        rootPlayer = player;
+        hasRoot = true;
+        playouts = 0;
+    }
+
+    /**
+     * looks for the node of a position below node, among the expanded nodes only
+     */
+    private int find(int node, long black, long white, int player, long targetBlack, long targetWhite, int targetPlayer, int pliesLeft) {
+        if (black == targetBlack && white == targetWhite && player == targetPlayer) {
+            return node;
+        }
+        int first = firstChild[node];
+        if (pliesLeft == 0 || first < 0) {
+            return -1;
+        }
+        for (int child = first; child < first + childCount[node]; child++) {
+            long childBlack = black;
+            long childWhite = white;
+            int square = move[child];
+            if (square != PASS) {
+                long own = player == BitBoard.BLACK ? black : white;
+                long opp = player == BitBoard.BLACK ? white : black;
+                long flips = BitBoard.computeFlips(square, own, opp);
+                own |= flips | (1L << square);
+                opp &= ~flips;
+                childBlack = player == BitBoard.BLACK ? own : opp;
+                childWhite = player == BitBoard.BLACK ? opp : own;
+            }
+            int found = find(child, childBlack, childWhite, BitBoard.opponentOf(player),
+                    targetBlack, targetWhite, targetPlayer, pliesLeft - 1);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * copies the subtree of a node into the spare arrays breadth first, keeping siblings together, and swaps the arrays
+     */
+    private void pack(int root) {
+        // queue[i] is the old node that becomes node i
+        queue[0] = root;
+        copyNode(root, 0);
+        int packed = 1;
+        for (int index = 0; index < packed; index++) {
+            int old = queue[index];
+            int first = firstChild[old];
+            if (first < 0) {
+                spareFirstChild[index] = first;
+                continue;
+            }
+            spareFirstChild[index] = packed;
+            for (int child = first; child < first + childCount[old]; child++) {
+                queue[packed] = child;
+                copyNode(child, packed++);
+            }
+        }
+        size = packed;
+
+        byte[] bytes = move; move = spareMove; spareMove = bytes;
+        bytes = childCount; childCount = spareChildCount; spareChildCount = bytes;
+        int[] ints = firstChild; firstChild = spareFirstChild; spareFirstChild = ints;
+        ints = visits; visits = spareVisits; spareVisits = ints;
+        ints = score; score = spareScore; spareScore = ints;
+        ints = raveVisits; raveVisits = spareRaveVisits; spareRaveVisits = ints;
+        ints = raveScore; raveScore = spareRaveScore; spareRaveScore = ints;
+    }
+
+    private void copyNode(int from, int to) {
+        spareMove[to] = move[from];
+        spareChildCount[to] = childCount[from];
+        spareVisits[to] = visits[from];
+        spareScore[to] = score[from];
+        spareRaveVisits[to] = raveVisits[from];
+        spareRaveScore[to] = raveScore[from];
+    }
+
+    private int newNode(int square) {
+        int node = size++;
+        move[node] = (byte) square;
+        firstChild[node] = UNEXPANDED;
+        childCount[node] = 0;
+        visits[node] = 0;
+        score[node] = 0;
+        raveVisits[node] = 0;
+        raveScore[node] = 0;
+        return node;
+    }
+
+    /**
+     * Runs playouts from the root until the deadline, the playout limit or the stop signal.
+     * @param deadline System.currentTimeMillis() to stop at
+     * @param maxPlayouts most playouts of this search
+     * @param stopSignal set from another thread to stop early
+     */
+    public void search(long deadline, long maxPlayouts, AtomicBoolean stopSignal) {
+        while (playouts < maxPlayouts) {
+            if ((playouts & CLOCK_CHECK_INTERVAL) == 0 && (stopSignal.get() || System.currentTimeMillis() >= deadline)) {
+                break;
+            }
+            playout();
+            playouts++;
+        }
+    }
+
+    /**
+     * one walk down the tree, a random game from the leaf and the result counted along the path
+     */
+    private void playout() {
+        long own = rootPlayer == BitBoard.BLACK ? rootBlack : rootWhite;
+        long opp = rootPlayer == BitBoard.BLACK ? rootWhite : rootBlack;
+        int player = rootPlayer;
+        long blackPlayed = 0; // squares each side played after the root, for RAVE
+        long whitePlayed = 0;
+        int node = 0;
+        int length = 0;
+        pathNode[length] = node;
+        pathPlayer[length++] = player;
+        while (true) {
+            if (firstChild[node] == UNEXPANDED) {
+                // a leaf is expanded on its second visit, so single playouts do not fill the pool
+                if ((node != 0 && visits[node] == 0) || !expand(node, own, opp)) {
+                    break;
+                }
+            }
+            if (firstChild[node] == TERMINAL) {
+                break;
+            }
+            node = select(node);
+            int square = move[node];
+            if (square != PASS) {
+                long flips = BitBoard.computeFlips(square, own, opp);
+                own |= flips | (1L << square);
+                opp &= ~flips;
+                if (player == BitBoard.BLACK) {
+                    blackPlayed |= 1L << square;
+                } else {
+                    whitePlayed |= 1L << square;
+                }
+            }
+            long swap = own;
+            own = opp;
+            opp = swap;
+            player = BitBoard.opponentOf(player);
+            pathNode[length] = node;
+            pathPlayer[length++] = player;
+        }
+
+        // random game to the end, the same moves the random player makes
+        boolean passed = false;
+        while (true) {
+            long moves = BitBoard.generateMoves(own, opp);
+            if (moves != 0) {
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                int square = Long.numberOfTrailingZeros(moves);
+                long flips = BitBoard.computeFlips(square, own, opp);
+                own |= flips | (1L << square);
+                opp &= ~flips;
+                if (player == BitBoard.BLACK) {
+                    blackPlayed |= 1L << square;
+                } else {
+                    whitePlayed |= 1L << square;
+                }
+                passed = false;
+            } else if (passed) {
+                break;
+            } else {
+                passed = true;
+            }
+            long swap = own;
+            own = opp;
+            opp = swap;
+            player = BitBoard.opponentOf(player);
+        }
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        int blackDiff = player == BitBoard.BLACK ? diff : -diff;
+        int blackPoints = blackDiff > 0 ? 2 : blackDiff == 0 ? 1 : 0;
+
+        for (int i = 0; i < length; i++) {
+            int n = pathNode[i];
+            visits[n]++;
+            // a node holds the result of the player who moved into it, the opponent of the player to move there
+            score[n] += pathPlayer[i] == BitBoard.BLACK ? 2 - blackPoints : blackPoints;
+            int first = firstChild[n];
+            if (raveEquivalence > 0 && first >= 0) {
+                int mover = pathPlayer[i];
+                long played = mover == BitBoard.BLACK ? blackPlayed : whitePlayed;
+                int points = mover == BitBoard.BLACK ? blackPoints : 2 - blackPoints;
+                for (int child = first; child < first + childCount[n]; child++) {
+                    int square = move[child];
+                    if (square != PASS && (played & (1L << square)) != 0) {
+                        raveVisits[child]++;
+                        raveScore[child] += points;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * adds a child per valid move, one pass child when only the opponent can move, or marks the game finished
+     * @return false when the pool is full
+     */
+    private boolean expand(int node, long own, long opp) {
+        long moves = BitBoard.generateMoves(own, opp);
+        if (moves == 0) {
+            if (BitBoard.generateMoves(opp, own) == 0) {
+                firstChild[node] = TERMINAL;
+                return true;
+            }
+            if (size + 1 > move.length) {
+                return false;
+            }
+            firstChild[node] = size;
+            childCount[node] = 1;
+            newNode(PASS);
+            return true;
+        }
+        int count = Long.bitCount(moves);
+        if (size + count > move.length) {
+            return false;
+        }
+        firstChild[node] = size;
+        childCount[node] = (byte) count;
+        for (; moves != 0; moves &= moves - 1) {
+            newNode(Long.numberOfTrailingZeros(moves));
+        }
+        return true;
+    }
+
+    /**
+     * picks the child with the best upper confidence bound, children never tried come first
+     */
+    private int select(int node) {
+        int first = firstChild[node];
+        int end = first + childCount[node];
+        double logVisits = Math.log(Math.max(1, visits[node]));
+        double beta = raveEquivalence > 0 ? Math.sqrt(raveEquivalence / (3.0 * visits[node] + raveEquivalence)) : 0;
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < end; child++) {
+            int n = visits[child];
+            if (n == 0) {
+                return child;
+            }
+            double value = score[child] / (2.0 * n);
+            if (beta > 0 && raveVisits[child] > 0) {
+                value = (1 - beta) * value + beta * raveScore[child] / (2.0 * raveVisits[child]);
+            }
+            value += exploration * Math.sqrt(logVisits / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * get how often the root's move to a square was played
+     * @param square index 0..63, or PASS
+     * @return visits, 0 if the move is not in the tree
+     */
+    public int getRootVisits(int square) {
+        int first = firstChild[0];
+        if (first < 0) {
+            return 0;
+        }
+        for (int child = first; child < first + childCount[0]; child++) {
+            if (move[child] == square) {
+                return visits[child];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * get the half points the root's move to a square scored
+     * @param square index 0..63, or PASS
+     * @return 2 per win and 1 per draw of the player to move, 0 if the move is not in the tree
+     */
+    public int getRootScore(int square) {
+        int first = firstChild[0];
+        if (first < 0) {
+            return 0;
+        }
+        for (int child = first; child < first + childCount[0]; child++) {
+            if (move[child] == square) {
+                return score[child];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * get number of playouts since the root was set
+     * @return playouts
+     */
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * get the number of nodes in use
+     * @return nodes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * check if the last setRoot kept the nodes below the new root
+     * @return true if the tree was reused
+     */
+    public boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * get playouts counted at the root, including those a reused tree brought along
+     * @return visits of the root
+     */
+    public int getRootVisits() {
+        return visits[0];
+    }
+}
@@ -0,0 +1,387 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class NBoardEngine {
+    private static final String NAME = "OthelloGame";
+    private static final Pattern GGF_TAG = Pattern.compile("([A-Z]+)\\[([^\\]]*)\\]");
+    private static final long CLOCK_MARGIN_MILLIS = 500; // never plan to use the last of the clock
+    private static final int EXTRA_MOVES = 2; // plan as if a few more moves were left than there are
+    private static final long MIN_MOVE_MILLIS = 10;
+
+    private final SearchEngine engine;
+    private final Search search;
+    private final long moveMillis; // budget without a clock, 0 for the depth limit alone
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+    private final ExecutorService searcher;
+    private final Writer out;
+    private Future<?> running; // go or hint being worked on, null when idle
+
+    // the game, only changed by the command loop while nothing is searching
+    private long black;
+    private long white;
+    private int toMove;
+    private boolean timed;
+    private final double[] clockSeconds = new double[3]; // time left for black and white, by player
+
+    /**
+     * Describes an engine for Othello GUIs speaking the NBoard protocol.
+     * Commands are read on the calling thread and searches run on their own thread,
+     * so the command loop never waits for a search unless a new command has to stop it first.
+     * @param engineConfig search engine settings, the time is used when the game has no clock
+     * @param out where replies are written, flushed after every line
+     * @throws IOException if the engine's book or weights can not be read
+     */
+    public NBoardEngine(EngineConfig engineConfig, Writer out) throws IOException {
+        Engine created = engineConfig.createEngine();
+        if (!(created instanceof SearchEngine)) {
+            throw new IllegalArgumentException("the NBoard engine needs a search engine, not " + engineConfig);
+        }
+        engine = (SearchEngine) created;
+        search = engine.getSearch();
+        search.setStopSignal(stopSignal);
+        moveMillis = engineConfig.getTimeMillis();
+        this.out = out;
+        searcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        setGame(BitBoard.START_BLACK, BitBoard.START_WHITE, BitBoard.BLACK);
+    }
+
+    /**
+     * Answers commands until the input ends or says quit.
+     * @param in commands, one per line
+     * @throws IOException if reading or writing fails
+     */
+    public void run(BufferedReader in) throws IOException {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                finishSearch();
+                if (line.equals("quit")) {
+                    break;
+                }
+                try {
+                    handle(line);
+                } catch (IllegalArgumentException e) {
+                    send("status " + e.getMessage());
+                }
+            }
+            finishSearch();
+        } finally {
+            searcher.shutdownNow();
+        }
+    }
+
+    private void handle(String line) throws IOException {
+        String[] words = line.split("\\s+", 3);
+        switch (words[0]) {
+            case "nboard":
+                send("set myname " + NAME);
+                break;
+            case "set":
+                if (words.length < 3) {
+                    throw new IllegalArgumentException("set needs a name and a value");
+                }
+                if (words[1].equals("depth")) {
+                    search.setMaxDepth(Integer.parseInt(words[2].trim()));
+                } else if (words[1].equals("game")) {
+                    setGame(words[2]);
+                }
+                // contempt and anything newer is accepted and ignored
+                break;
+            case "move":
+                if (words.length < 2) {
+                    throw new IllegalArgumentException("move needs a move");
+                }
+                playMove(words[1], toMove);
+                break;
+            case "hint":
+                int count = words.length > 1 ? Integer.parseInt(words[1]) : 1;
+                startSearch((own, opp, player) -> hint(own, opp, player, count));
+                break;
+            case "go":
+                startSearch(this::go);
+                break;
+            case "ping":
+                send(words.length > 1 ? "pong " + words[1] : "pong");
+                break;
+            case "learn":
+                send("learned");
+                break;
+            default:
+                // the protocol lets an engine ignore commands it does not know, analyze among them
+                break;
+        }
+    }
+
+    /**
+     * runs a go or hint on the search thread, against the current position
+     */
+    private void startSearch(SearchTask task) {
+        long own = toMove == BitBoard.BLACK ? black : white;
+        long opp = toMove == BitBoard.BLACK ? white : black;
+        int player = toMove;
+        stopSignal.set(false);
+        running = searcher.submit(() -> {
+            try {
+                task.run(own, opp, player);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    private interface SearchTask {
+        void run(long own, long opp, int player) throws IOException;
+    }
+
+    /**
+     * stops a running search and waits until it has written its reply, so replies stay in command order
+     */
+    private void finishSearch() throws IOException {
+        if (running == null) {
+            return;
+        }
+        stopSignal.set(true);
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            send("status search failed: " + e.getCause());
+        }
+        running = null;
+    }
+
+    /**
+     * Chooses a move within the clock and replies "=== move/eval/seconds".
+     * The board is not changed, the GUI sends the move back with a move command.
+     */
+    private void go(long own, long opp, int player) throws IOException {
+        if (BitBoard.generateMoves(own, opp) == 0) {
+            send("=== PA");
+            return;
+        }
+        int empties = Long.bitCount(~(own | opp));
+        search.setTimeBudgetMillis(moveBudgetMillis(player, empties));
+        long start = System.nanoTime();
+        int move = engine.chooseMove(own, opp, player);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (engine.isLastMoveFromBook()) {
+            send(String.format(Locale.ROOT, "=== %s//%.2f", BitBoard.nameOf(move), seconds));
+            return;
+        }
+        send(String.format(Locale.ROOT, "nodestats %d %.2f", search.getNodes(), seconds));
+        send(String.format(Locale.ROOT, "=== %s/%.2f/%.2f", BitBoard.nameOf(move), discs(search.getBestScore()), seconds));
+    }
+
+    /**
+     * Scores the best few moves, best first, by searching again with the moves already reported left out.
+     * Every search runs to the depth limit, the GUI stops a hint by sending its next command.
+     * A search line is sent after each finished depth, so a stopped hint still shows its deepest result.
+     */
+    private void hint(long own, long opp, int player, int count) throws IOException {
+        send("status thinking");
+        int empties = Long.bitCount(~(own | opp));
+        search.setTimeBudgetMillis(Long.MAX_VALUE / 2);
+        search.setListener((depth, move, score, nodes) -> {
+            boolean solved = depth >= empties || Math.abs(score) >= Search.WIN_SCORE;
+            try {
+                send(String.format(Locale.ROOT, "search %s %.2f 0 %s", BitBoard.nameOf(move), discs(score),
+                        solved ? "100%" : String.valueOf(depth)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long excluded = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                search.setExcludedMoves(excluded);
+                int move = search.findBestMove(own, opp, player);
+                if (move == Search.NO_MOVE || stopSignal.get()) {
+                    break;
+                }
+                excluded |= 1L << move;
+            }
+        } finally {
+            search.setExcludedMoves(0);
+            search.setListener(null);
+        }
+        send("status");
+    }
+
+    /**
+     * get the search time for one move from the clock of the player to move
+     */
+    private long moveBudgetMillis(int player, int empties) {
+        if (!timed) {
+            return moveMillis > 0 ? moveMillis : Long.MAX_VALUE / 2;
+        }
+        long left = (long) (clockSeconds[player] * 1000) - CLOCK_MARGIN_MILLIS;
+        int movesLeft = (empties + 1) / 2 + EXTRA_MOVES;
+        return Math.max(MIN_MOVE_MILLIS, left / movesLeft);
+    }
+
+    /**
+     * get a score in discs of final margin, the unit NBoard shows
+     */
+    private static double discs(int score) {
+        if (score >= Search.WIN_SCORE) {
+            return score - Search.WIN_SCORE;
+        } else if (score <= -Search.WIN_SCORE) {
+            return score + Search.WIN_SCORE;
+        }
+        return score / (double) PatternWeights.SCALE;
+    }
+
+    /**
+     * Reads a game in GGF, e.g. "(;GM[Othello]TI[5:00]BO[8 ---...--- *]B[d3//1.5]W[c5];)":
+     * the start position, the clock and every move played since.
+     * @param ggf game record
+     */
+    private void setGame(String ggf) {
+        setGame(BitBoard.START_BLACK, BitBoard.START_WHITE, BitBoard.BLACK);
+        timed = false;
+        Matcher tag = GGF_TAG.matcher(ggf);
+        while (tag.find()) {
+            String value = tag.group(2).trim();
+            switch (tag.group(1)) {
+                case "BO":
+                    setBoard(value);
+                    break;
+                case "TI":
+                    double seconds = parseTime(value);
+                    clockSeconds[BitBoard.BLACK] = seconds;
+                    clockSeconds[BitBoard.WHITE] = seconds;
+                    timed = seconds > 0;
+                    break;
+                case "B":
+                    playMove(value, BitBoard.BLACK);
+                    break;
+                case "W":
+                    playMove(value, BitBoard.WHITE);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void setGame(long black, long white, int toMove) {
+        this.black = black;
+        this.white = white;
+        this.toMove = toMove;
+    }
+
+    /**
+     * reads a GGF board: the size, 64 squares from a1 to h8 as *, O or -, then the side to move
+     */
+    private void setBoard(String value) {
+        String[] parts = value.split("\\s+", 2);
+        if (!parts[0].equals("8")) {
+            throw new IllegalArgumentException("only 8x8 games are supported, not " + parts[0]);
+        }
+        String squares = parts.length > 1 ? parts[1].replaceAll("\\s+", "") : "";
+        if (squares.length() != 65) {
+            throw new IllegalArgumentException("expected 64 squares and a side to move in " + value);
+        }
+        long black = 0;
+        long white = 0;
+        for (int square = 0; square < 64; square++) {
+            char c = squares.charAt(square);
+            if (c == '*' || c == 'X' || c == 'x' || c == 'B' || c == 'b') {
+                black |= 1L << square;
+            } else if (c == 'O' || c == 'o' || c == 'W' || c == 'w') {
+                white |= 1L << square;
+            }
+        }
+        setGame(black, white, squares.charAt(64) == '*' ? BitBoard.BLACK : BitBoard.WHITE);
+    }
+
+    /**
+     * get the seconds of a GGF time such as "90", "5:00" or "1:00:00//2:00", increments are ignored
+     */
+    private static double parseTime(String value) {
+        int slash = value.indexOf('/');
+        String[] parts = (slash < 0 ? value : value.substring(0, slash)).split(":");
+        double seconds = 0;
+        for (String part : parts) {
+            seconds = seconds * 60 + (part.isEmpty() ? 0 : Double.parseDouble(part));
+        }
+        return seconds;
+    }
+
+    /**
+     * plays a move written "d3", "d3/eval" or "d3/eval/seconds", "PA" for a pass, and charges its time to the mover
+     * @param text move
+     * @param player who makes it, normally the player to move
+     */
+    private void playMove(String text, int player) {
+        String[] parts = text.split("/");
+        String name = parts[0].trim();
+        long own = player == BitBoard.BLACK ? black : white;
+        long opp = player == BitBoard.BLACK ? white : black;
+        if (!name.equalsIgnoreCase("PA") && !name.equalsIgnoreCase("pass")) {
+            int square = BitBoard.parseSquare(name);
+            long flips = BitBoard.computeFlips(square, own, opp);
+            if (flips == 0 || ((own | opp) & (1L << square)) != 0) {
+                throw new IllegalArgumentException("illegal move " + name);
+            }
+            own |= flips | (1L << square);
+            opp &= ~flips;
+        }
+        if (parts.length > 2 && !parts[2].isEmpty()) {
+            clockSeconds[player] -= Double.parseDouble(parts[2]);
+        }
+        if (player == BitBoard.BLACK) {
+            setGame(own, opp, BitBoard.WHITE);
+        } else {
+            setGame(opp, own, BitBoard.BLACK);
+        }
+    }
+
+    private void send(String line) throws IOException {
+        synchronized (out) {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Speaks the NBoard protocol on standard input and output, loading nothing of the Swing game.
+     * Arguments: [engine], e.g. search:depth=12,hash=64,endgame=18,eval=eval.bin
+     */
+    public static void main(String[] args) throws IOException {
+        EngineConfig config = EngineConfig.parse(args.length > 0 ? args[0] : "search:depth=12,hash=64,endgame=18");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.US_ASCII));
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        new NBoardEngine(config, out).run(in);
+    }
+}
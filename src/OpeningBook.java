@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class OpeningBook {
+    public static final int NO_MOVE = -1;
+
+    // file layout: magic, version, entry count, then entries sorted by key
+    // since version 2 keys are canonical hashes and moves are in the canonical orientation, see Symmetry
+    static final int MAGIC = 0x4F424B31; // "OBK1"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 16; // key, move, depth, score, games
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+
+    /**
+     * Describes a read-only opening book mapped straight from disk.
+     * Pages are loaded on first use and shared through the page cache by every process using the file.
+     * @param buffer mapped file contents
+     */
+    private OpeningBook(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not an opening book file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("opening book version " + buffer.getInt(4) + " is not " + VERSION + ", rebuild the book");
+        }
+        entryCount = buffer.getInt(8);
+        if ((long) HEADER_BYTES + (long) entryCount * ENTRY_BYTES > buffer.capacity()) {
+            throw new IllegalArgumentException("opening book file is truncated");
+        }
+    }
+
+    /**
+     * maps a book file
+     * @param path of the book
+     * @return book
+     * @throws IOException if the file can not be read
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * get number of positions in the book
+     * @return entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Looks up the book move of a position in any orientation.
+     * All 8 orientations of a position share one entry, the move is turned back to the orientation asked about.
+     * @param black discs of black
+     * @param white discs of white
+     * @param player 1 or 2, the player to move
+     * @return square index of the move, or NO_MOVE if the position is not in the book
+     */
+    public int lookup(long black, long white, int player) {
+        int symmetry = Symmetry.canonicalSymmetry(black, white);
+        int move = lookup(Zobrist.hash(Symmetry.transform(black, symmetry), Symmetry.transform(white, symmetry), player));
+        return move == NO_MOVE ? NO_MOVE : Symmetry.transformSquare(move, Symmetry.inverse(symmetry));
+    }
+
+    /**
+     * look up the book move stored under a key
+     * @param hash canonical hash of the position and player to move
+     * @return square index of the move in the canonical orientation, or NO_MOVE if the key is not in the book
+     */
+    public int lookup(long hash) {
+        int index = find(hash);
+        return index < 0 ? NO_MOVE : buffer.get(offsetOf(index) + 8) & 0xFF;
+    }
+
+    /**
+     * look up the packed entry stored under a key
+     * @param hash canonical hash of the position and player to move
+     * @return entry as packed by pack, or 0 if the position is not in the book
+     */
+    public long lookupEntry(long hash) {
+        int index = find(hash);
+        return index < 0 ? 0L : buffer.getLong(offsetOf(index) + 8);
+    }
+
+    /**
+     * get the key of an entry, for walking the whole book
+     * @param index 0..entries-1
+     * @return hash
+     */
+    public long keyAt(int index) {
+        return buffer.getLong(offsetOf(index));
+    }
+
+    /**
+     * get the packed entry at an index, for walking the whole book
+     * @param index 0..entries-1
+     * @return entry as packed by pack
+     */
+    public long entryAt(int index) {
+        return buffer.getLong(offsetOf(index) + 8);
+    }
+
+    /**
+     * binary search over the sorted keys
+     * @return index of hash, or -1
+     */
+    private int find(long hash) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long key = buffer.getLong(offsetOf(middle));
+            if (key < hash) {
+                low = middle + 1;
+            } else if (key > hash) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int offsetOf(int index) {
+        return HEADER_BYTES + index * ENTRY_BYTES;
+    }
+
+    /**
+     * packs the data of one entry into 8 bytes, the move in the lowest byte
+     * @param move square index
+     * @param depth plies the move was searched to
+     * @param score search score of the move, clamped to a short
+     * @param games number of times the position was reached while building
+     * @return packed entry
+     */
+    public static long pack(int move, int depth, int score, int games) {
+        int clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score));
+        return (move & 0xFF) | ((long) (depth & 0xFF) << 8) | ((long) (clamped & 0xFFFF) << 16) | ((long) games << 32);
+    }
+
+    public static int moveOf(long entry) {
+        return (int) entry & 0xFF;
+    }
+
+    public static int depthOf(long entry) {
+        return (int) (entry >>> 8) & 0xFF;
+    }
+
+    public static int scoreOf(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int gamesOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * Writes a book file. The book is written next to it first and then moved in place,
+     * so a process that has the old book mapped keeps reading the old file instead of one shrinking under it.
+     * @param path of the book
+     * @param keys canonical position hashes, sorted ascending
+     * @param entries packed entries in the same order
+     * @param count number of entries to write
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Path path, long[] keys, long[] entries, int count) throws IOException {
+        Path written = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writeEntries(written, keys, entries, count);
+            Files.move(written, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(written);
+        }
+    }
+
+    private static void writeEntries(Path path, long[] keys, long[] entries, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer block = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            block.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+            for (int i = 0; i < count; i++) {
+                if (block.remaining() < ENTRY_BYTES) {
+                    block.flip();
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                    block.clear();
+                }
+                block.putLong(keys[i]).putLong(entries[i]);
+            }
+            block.flip();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        }
+    }
+}
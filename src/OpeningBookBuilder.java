@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public class OpeningBookBuilder {
+    private final Map<Long, Long> entries = new HashMap<>();
+    private final Search search;
+    private final int depth;
+
+    /**
+     * Describes a builder that grows an opening book with searched moves
+     * @param depth plies each book position is searched to
+     * @param hashSizeMB memory for the search's transposition table
+     */
+    public OpeningBookBuilder(int depth, int hashSizeMB) {
+        this.depth = depth;
+        search = new Search(Long.MAX_VALUE / 2, new TranspositionTable(hashSizeMB));
+        search.setMaxDepth(depth);
+    }
+
+    /**
+     * copy every entry of an existing book, so building adds to it
+     * @param book to start from
+     */
+    public void addAll(OpeningBook book) {
+        for (int i = 0; i < book.getEntryCount(); i++) {
+            entries.put(book.keyAt(i), book.entryAt(i));
+        }
+    }
+
+    /**
+     * add the result of a search done elsewhere, kept if it is at least as deep as the entry already there
+     * @param hash canonical hash of the position and player to move
+     * @param move square index in the canonical orientation
+     * @param depth plies searched
+     * @param score search score
+     */
+    public void add(long hash, int move, int depth, int score) {
+        Long old = entries.get(hash);
+        int games = old == null ? 1 : OpeningBook.gamesOf(old) + 1;
+        if (old == null || depth >= OpeningBook.depthOf(old)) {
+            entries.put(hash, OpeningBook.pack(move, depth, score, games));
+        } else {
+            entries.put(hash, OpeningBook.pack(OpeningBook.moveOf(old), OpeningBook.depthOf(old), OpeningBook.scoreOf(old), games));
+        }
+    }
+
+    /**
+     * Plays one self-play game from the start position.
+     * Every position of the first plies is searched unless the book already has it at this depth,
+     * and the game follows the book move, or a random move with probability explore so the book branches out.
+     * @param plies number of moves of the game to put in the book
+     * @param explore chance of playing a random move instead of the book move
+     * @param random source of the random moves
+     */
+    public void playGame(int plies, double explore, SplittableRandom random) {
+        BitBoard board = new BitBoard(BitBoard.START_BLACK, BitBoard.START_WHITE);
+        int player = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getValidMoves(player);
+            if (moves == 0) {
+                player = BitBoard.opponentOf(player);
+                if (board.getValidMoves(player) == 0) {
+                    return;
+                }
+                continue;
+            }
+            // symmetric positions share an entry, stored in the canonical orientation
+            int symmetry = Symmetry.canonicalSymmetry(board.getBlack(), board.getWhite());
+            long hash = Zobrist.hash(Symmetry.transform(board.getBlack(), symmetry), Symmetry.transform(board.getWhite(), symmetry), player);
+            Long entry = entries.get(hash);
+            int move;
+            if (entry == null || OpeningBook.depthOf(entry) < depth) {
+                move = search.findBestMove(board.getDiscs(player), board.getDiscs(BitBoard.opponentOf(player)), player);
+                add(hash, Symmetry.transformSquare(move, symmetry), depth, search.getBestScore());
+            } else {
+                move = Symmetry.transformSquare(OpeningBook.moveOf(entry), Symmetry.inverse(symmetry));
+                add(hash, OpeningBook.moveOf(entry), OpeningBook.depthOf(entry), OpeningBook.scoreOf(entry));
+            }
+            if (random.nextDouble() < explore) {
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                move = Long.numberOfTrailingZeros(moves);
+            }
+            board.play(move, player);
+            player = BitBoard.opponentOf(player);
+        }
+    }
+
+    /**
+     * get number of positions collected
+     * @return entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * writes the book sorted by key
+     * @param path of the book
+     * @throws IOException if the file can not be written
+     */
+    public void write(Path path) throws IOException {
+        long[] keys = new long[entries.size()];
+        int count = 0;
+        for (long key : entries.keySet()) {
+            keys[count++] = key;
+        }
+        Arrays.sort(keys);
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = entries.get(keys[i]);
+        }
+        OpeningBook.write(path, keys, packed, count);
+    }
+
+    /**
+     * Builds or grows a book from self-play.
+     * Arguments: book file, [games] [plies per game] [search depth] [explore chance] [seed]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: OpeningBookBuilder <book file> [games] [plies] [depth] [explore] [seed]");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        double explore = args.length > 4 ? Double.parseDouble(args[4]) : 0.3;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1L;
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(depth, 64);
+        if (Files.exists(path)) {
+            builder.addAll(OpeningBook.open(path));
+            System.out.println("growing " + path + " from " + builder.size() + " positions");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        long start = System.currentTimeMillis();
+        for (int game = 0; game < games; game++) {
+            builder.playGame(plies, explore, random);
+        }
+        builder.write(path);
+        System.out.println(builder.size() + " positions written to " + path + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        // time lookups of every position in the new book
+        OpeningBook book = OpeningBook.open(path);
+        long lookupStart = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < book.getEntryCount(); i++) {
+            if (book.lookup(book.keyAt(i)) != OpeningBook.NO_MOVE) {
+                found++;
+            }
+        }
+        long nanos = System.nanoTime() - lookupStart;
+        System.out.printf("%d lookups, %.2f us each%n", found, nanos / 1000.0 / Math.max(1, found));
+    }
+}
@@ -0,0 +1,314 @@
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ParallelSearch {
+    private static final int ENDGAME_HASH_SIZE_MB = 16;
+
+    private final Search[] searches;
+    private final Future<?>[] running;
+    private final ExecutorService helpers; // null with a single thread
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+
+    private long nodes;
+    private long elapsedMillis;
+
+    /**
+     * Describes a Lazy SMP search: every thread runs its own iterative deepening on the same root
+     * and they share one lock-free transposition table, so each thread profits from what the others found.
+     * The calling thread runs the main search, whose move is returned.
+     * @param timeBudgetMillis time allowed per move
+     * @param table transposition table shared by every thread
+     * @param threads number of search threads, 1 or more
+     */
+    public ParallelSearch(long timeBudgetMillis, TranspositionTable table, int threads) {
+        threads = Math.max(1, threads);
+        searches = new Search[threads];
+        running = new Future<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(timeBudgetMillis, table);
+            searches[i].setStopSignal(stopSignal);
+            if (i > 0) {
+                // odd helpers look one ply further ahead so threads spread over different depths
+                searches[i].setHelper(i % 2);
+            }
+        }
+        searches[0].setEndgameSolver(new EndgameSolver(ENDGAME_HASH_SIZE_MB));
+        if (threads > 1) {
+            helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        for (Search search : searches) {
+            search.setTimeBudgetMillis(timeBudgetMillis);
+        }
+    }
+
+    /**
+     * limit how deep iterative deepening goes
+     * @param maxDepth deepest iteration, in plies
+     */
+    public void setMaxDepth(int maxDepth) {
+        for (Search search : searches) {
+            search.setMaxDepth(maxDepth);
+        }
+    }
+
+    /**
+     * set when the endgame solver takes over
+     * @param endgameEmpties most empty squares solved exactly
+     */
+    public void setEndgameEmpties(int endgameEmpties) {
+        for (Search search : searches) {
+            search.setEndgameEmpties(endgameEmpties);
+        }
+    }
+
+    /**
+     * limit the time of the endgame solver on its own, see Search.setEndgameTimeBudgetMillis
+     * @param endgameTimeBudgetMillis time the solver may use, 0 for three quarters of the time budget
+     */
+    public void setEndgameTimeBudgetMillis(long endgameTimeBudgetMillis) {
+        for (Search search : searches) {
+            search.setEndgameTimeBudgetMillis(endgameTimeBudgetMillis);
+        }
+    }
+
+    /**
+     * evaluate with pattern weights, each thread gets its own evaluator over the shared weights
+     * @param weights pattern weights, null for the built-in heuristic
+     */
+    public void setWeights(PatternWeights weights) {
+        for (Search search : searches) {
+            search.setEvaluator(weights == null ? null : new PatternEvaluator(weights));
+        }
+    }
+
+    /**
+     * report the progress of the main search
+     * @param listener called on the calling thread of findBestMove after every finished iteration, null for none
+     */
+    public void setListener(SearchListener listener) {
+        searches[0].setListener(listener);
+    }
+
+    /**
+     * Count table use, cutoffs and endgame solves in every thread from now on.
+     * Switched off the search counts nothing and runs as if metrics did not exist.
+     * @param enabled true to count, false to stop counting and drop the counts
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        for (Search search : searches) {
+            search.setMetrics(enabled ? new SearchMetrics() : null);
+        }
+    }
+
+    /**
+     * Adds up the counters of every thread since metrics were switched on or last cleared.
+     * It may be called while a search runs, the counts then lag a little behind the search.
+     * @return snapshot of the counters, null when metrics are off
+     */
+    public SearchMetrics getMetrics() {
+        if (searches[0].getMetrics() == null) {
+            return null;
+        }
+        SearchMetrics total = new SearchMetrics();
+        for (Search search : searches) {
+            total.add(search.getMetrics());
+        }
+        return total;
+    }
+
+    /**
+     * set the counters of every thread back to 0, for example when a new game starts
+     */
+    public void clearMetrics() {
+        for (Search search : searches) {
+            if (search.getMetrics() != null) {
+                search.getMetrics().clear();
+            }
+        }
+    }
+
+    /**
+     * get number of search threads
+     * @return threads
+     */
+    public int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * Searches with every thread until the main search finishes or runs out of time.
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param player 1 or 2, colour of own
+     * @return square index of the best move, or Search.NO_MOVE if there is no valid move
+     */
+    public int findBestMove(long own, long opp, int player) {
+        long start = System.currentTimeMillis();
+        stopSignal.set(false);
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            running[i] = helpers.submit(() -> helper.findBestMove(own, opp, player));
+        }
+        int move = searches[0].findBestMove(own, opp, player);
+
+        stopSignal.set(true);
+        nodes = searches[0].getNodes();
+        for (int i = 1; i < searches.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("search helper failed", e.getCause());
+            }
+            nodes += searches[i].getNodes();
+        }
+        elapsedMillis = System.currentTimeMillis() - start;
+        return move;
+    }
+
+    /**
+     * ask a running search to return the move of its last finished depth
+     */
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    /**
+     * stop the helper threads, the search can not be used afterwards
+     */
+    public void shutdown() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * get number of positions visited by all threads in the last search
+     * @return nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * get search speed of all threads in the last search
+     * @return nodes per second
+     */
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, elapsedMillis);
+    }
+
+    public TranspositionTable getTable() {
+        return searches[0].getTable();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * get deepest depth the main thread fully searched
+     * @return depth in plies
+     */
+    public int getCompletedDepth() {
+        return searches[0].getCompletedDepth();
+    }
+
+    /**
+     * get score of the returned move
+     * @return score from the side to move
+     */
+    public int getBestScore() {
+        return searches[0].getBestScore();
+    }
+
+    /**
+     * Measures time to depth on a fixed set of midgame positions with 1, 2, 4 ... threads
+     * and prints the speedup relative to a single thread.
+     * With metrics on the summed counters of all threads are printed as well,
+     * comparing the times with and without them shows what counting costs.
+     * Arguments: [max threads] [depth] [hash size in MB] [metrics: on or off]
+     */
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int hashSizeMB = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        boolean metrics = args.length > 3 && args[3].equals("on");
+
+        // midgame positions from seeded random play so every run measures the same work
+        int positions = 8;
+        long[][] roots = new long[positions][];
+        Random random = new Random(20);
+        for (int i = 0; i < positions; i++) {
+            roots[i] = randomPosition(random, 20);
+        }
+
+        long singleThreadMillis = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ParallelSearch search = new ParallelSearch(Long.MAX_VALUE / 2, new TranspositionTable(hashSizeMB), threads);
+            search.setMaxDepth(depth);
+            search.setMetricsEnabled(metrics);
+            long totalMillis = 0;
+            long totalNodes = 0;
+            for (long[] root : roots) {
+                search.getTable().clear();
+                search.findBestMove(root[0], root[1], (int) root[2]);
+                totalMillis += search.getElapsedMillis();
+                totalNodes += search.getNodes();
+            }
+            search.shutdown();
+            if (threads == 1) {
+                singleThreadMillis = totalMillis;
+            }
+            System.out.printf("%2d threads: %6d ms to depth %d, %,d nodes/sec, speedup %.2fx%n", threads, totalMillis,
+                    depth, totalNodes * 1000 / Math.max(1, totalMillis), (double) singleThreadMillis / Math.max(1, totalMillis));
+            if (metrics) {
+                System.out.println("    " + search.getMetrics());
+            }
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * plays random moves from the start position
+     * @return own, opp and player to move
+     */
+    private static long[] randomPosition(Random random, int plies) {
+        long black = BitBoard.START_BLACK;
+        long white = BitBoard.START_WHITE;
+        int player = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            BitBoard board = new BitBoard(black, white);
+            long moves = board.getValidMoves(player);
+            if (moves == 0) {
+                player = BitBoard.opponentOf(player);
+                continue;
+            }
+            for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                moves &= moves - 1;
+            }
+            board.play(Long.numberOfTrailingZeros(moves), player);
+            black = board.getBlack();
+            white = board.getWhite();
+            player = BitBoard.opponentOf(player);
+        }
+        BitBoard board = new BitBoard(black, white);
+        return new long[]{board.getDiscs(player), board.getDiscs(BitBoard.opponentOf(player)), player};
+    }
+}
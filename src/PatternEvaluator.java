@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+
+public class PatternEvaluator {
+    private final PatternWeights weights;
+    private final int[] indices = new int[Patterns.INSTANCES]; // digit 1 is black, 2 is white
+
+    /**
+     * Describes a pattern evaluation that keeps the index of every pattern instance up to date
+     * as moves are made and unmade, so evaluating a position is one table lookup per instance.
+     * Each search thread needs its own evaluator, the weights can be shared.
+     * @param weights trained pattern weights
+     */
+    public PatternEvaluator(PatternWeights weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * compute every index from scratch
+     * @param black discs of black
+     * @param white discs of white
+     */
+    public void setPosition(long black, long white) {
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = Patterns.indexOf(i, black, white);
+        }
+    }
+
+    /**
+     * update the indices for a move
+     * @param square where the disc was placed
+     * @param flips discs the move turned
+     * @param player 1 or 2, who moved
+     */
+    public void makeMove(int square, long flips, int player) {
+        update(square, flips, player, 1);
+    }
+
+    /**
+     * undo makeMove with the same arguments
+     */
+    public void unmakeMove(int square, long flips, int player) {
+        update(square, flips, player, -1);
+    }
+
+    private void update(int square, long flips, int player, int sign) {
+        // the placed disc adds its colour's digit, a flip to white adds 1 and a flip to black takes 1 away
+        int placed = sign * player;
+        for (int member = Patterns.MEMBER_START[square]; member < Patterns.MEMBER_START[square + 1]; member++) {
+            indices[Patterns.MEMBER_INSTANCE[member]] += placed * Patterns.MEMBER_POWER[member];
+        }
+        int flipped = player == BitBoard.WHITE ? sign : -sign;
+        for (; flips != 0; flips &= flips - 1) {
+            int flip = Long.numberOfTrailingZeros(flips);
+            for (int member = Patterns.MEMBER_START[flip]; member < Patterns.MEMBER_START[flip + 1]; member++) {
+                indices[Patterns.MEMBER_INSTANCE[member]] += flipped * Patterns.MEMBER_POWER[member];
+            }
+        }
+    }
+
+    /**
+     * score of the current position
+     * @param player 1 or 2, the player to move
+     * @param discs number of discs on the board, picks the phase
+     * @return score for the player to move, PatternWeights.SCALE per disc of expected final margin
+     */
+    public int evaluate(int player, int discs) {
+        short[] table = weights.tableFor(player, Patterns.phaseOf(discs));
+        int score = 0;
+        for (int i = 0; i < indices.length; i++) {
+            score += table[Patterns.OFFSET_OF[i] + indices[i]];
+        }
+        return score;
+    }
+
+    /**
+     * Measures evaluations per second and checks the incremental indices against ones computed from scratch
+     * while playing random games.
+     * Arguments: [weight file]
+     */
+    public static void main(String[] args) throws IOException {
+        PatternWeights weights;
+        if (args.length > 0) {
+            weights = PatternWeights.load(Paths.get(args[0]));
+        } else {
+            // random weights so the measurement can not be folded away
+            short[][] random = new short[PatternWeights.PHASES][Patterns.TABLE_SIZE];
+            Random generator = new Random(1);
+            for (short[] phase : random) {
+                for (int i = 0; i < phase.length; i++) {
+                    phase[i] = (short) (generator.nextInt(201) - 100);
+                }
+            }
+            weights = new PatternWeights(random);
+        }
+        System.out.println(Patterns.INSTANCES + " pattern instances, " + Patterns.TABLE_SIZE + " weights per phase");
+
+        PatternEvaluator evaluator = new PatternEvaluator(weights);
+        PatternEvaluator fresh = new PatternEvaluator(weights);
+        Random random = new Random(2);
+        long evaluations = 0;
+        long updates = 0;
+        long sum = 0;
+        long evaluateNanos = 0;
+        long updateNanos = 0;
+        int mismatches = 0;
+        for (int game = 0; game < 20000; game++) {
+            long own = BitBoard.START_BLACK;
+            long opp = BitBoard.START_WHITE;
+            int player = BitBoard.BLACK;
+            evaluator.setPosition(own, opp);
+            while (true) {
+                long moves = BitBoard.generateMoves(own, opp);
+                if (moves == 0) {
+                    if (BitBoard.generateMoves(opp, own) == 0) {
+                        break;
+                    }
+                    long swap = own;
+                    own = opp;
+                    opp = swap;
+                    player = BitBoard.opponentOf(player);
+                    continue;
+                }
+                int discs = Long.bitCount(own | opp);
+                long start = System.nanoTime();
+                for (int i = 0; i < 16; i++) {
+                    sum += evaluator.evaluate(player, discs);
+                }
+                evaluateNanos += System.nanoTime() - start;
+                evaluations += 16;
+
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                int square = Long.numberOfTrailingZeros(moves);
+                long flips = BitBoard.computeFlips(square, own, opp);
+                start = System.nanoTime();
+                for (int i = 0; i < 8; i++) {
+                    evaluator.makeMove(square, flips, player);
+                    evaluator.unmakeMove(square, flips, player);
+                }
+                evaluator.makeMove(square, flips, player);
+                updateNanos += System.nanoTime() - start;
+                updates += 17;
+
+                long newOwn = opp & ~flips;
+                opp = own | flips | (1L << square);
+                own = newOwn;
+                player = BitBoard.opponentOf(player);
+                long black = player == BitBoard.BLACK ? own : opp;
+                fresh.setPosition(black, player == BitBoard.BLACK ? opp : own);
+                if (fresh.evaluate(player, discs + 1) != evaluator.evaluate(player, discs + 1)) {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.printf("%,.0f evaluations/sec, %,.0f updates/sec, %d incremental mismatches (%d)%n",
+                evaluations * 1e9 / evaluateNanos, updates * 1e9 / updateNanos, mismatches, sum & 1);
+    }
+}
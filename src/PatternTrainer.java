@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PatternTrainer {
+    private static final int VALIDATION_EVERY = 10; // every 10th game of the archive is held out for validation
+    private static final int BATCHES_PER_THREAD = 2; // batches in flight, which bounds the games held in memory
+
+    private final float[] weights = new float[PatternWeights.PHASES * Patterns.TABLE_SIZE]; // in discs, [phase][weight]
+    private final int threads;
+    private final int gamesPerBatch;
+    private final float learningRate;
+
+    /**
+     * Describes a trainer that fits pattern weights to the final disc difference of archived games.
+     * The archive is streamed once per epoch: the calling thread reads games into a bounded pool of batches
+     * and the worker threads replay them, compute the error of every position and update the shared weights.
+     * Workers update the weights without locking, a lost update now and then does not hurt gradient descent.
+     * @param threads worker threads, 1 or more
+     * @param gamesPerBatch games whose positions make up one gradient step
+     * @param learningRate step size, each weight moves by this times its mean error in the batch
+     */
+    public PatternTrainer(int threads, int gamesPerBatch, float learningRate) {
+        this.threads = Math.max(1, threads);
+        this.gamesPerBatch = Math.max(1, gamesPerBatch);
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Games handed from the reader to a worker.
+     */
+    private static class Batch {
+        final GameRecord[] games;
+        int count;
+        long firstGame; // number of the first game in the archive, which decides the held out games
+
+        Batch(int size) {
+            games = new GameRecord[size];
+            for (int i = 0; i < size; i++) {
+                games[i] = new GameRecord();
+            }
+        }
+    }
+
+    private static final Batch END = new Batch(0); // tells a worker the epoch is over
+
+    /**
+     * A worker's gradient and error totals, kept apart from the other workers.
+     */
+    private class Worker {
+        private final float[] gradient = new float[weights.length];
+        private final int[] occurrences = new int[weights.length];
+        private final int[] touched = new int[gamesPerBatch * GameRecord.MAX_MOVES * Patterns.INSTANCES];
+        private final int[] features = new int[Patterns.INSTANCES];
+        private int touchedCount;
+
+        long trainSamples;
+        double trainSquaredError;
+        long validationSamples;
+        double validationSquaredError;
+        double validationAbsoluteError;
+        RuntimeException failure;
+
+        void resetTotals() {
+            trainSamples = 0;
+            trainSquaredError = 0;
+            validationSamples = 0;
+            validationSquaredError = 0;
+            validationAbsoluteError = 0;
+        }
+
+        /**
+         * takes batches until the end of the epoch, handing each one back to the reader when done
+         */
+        void run(BlockingQueue<Batch> full, BlockingQueue<Batch> free) throws InterruptedException {
+            while (true) {
+                Batch batch = full.take();
+                if (batch == END) {
+                    return;
+                }
+                // after a failure keep returning batches so the reader does not wait forever
+                if (failure == null) {
+                    try {
+                        train(batch);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+                free.put(batch);
+            }
+        }
+
+        private void train(Batch batch) {
+            for (int i = 0; i < batch.count; i++) {
+                replay(batch.games[i], (batch.firstGame + i) % VALIDATION_EVERY == 0);
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int weight = touched[i];
+                weights[weight] -= learningRate * gradient[weight] / occurrences[weight];
+                gradient[weight] = 0;
+                occurrences[weight] = 0;
+            }
+            touchedCount = 0;
+        }
+
+        /**
+         * plays a game from the start, taking every position with a move to play as a sample
+         */
+        private void replay(GameRecord game, boolean validation) {
+            int blackMargin = game.getBlackDiscs() - game.getWhiteDiscs();
+            long own = BitBoard.START_BLACK;
+            long opp = BitBoard.START_WHITE;
+            int player = BitBoard.BLACK;
+            for (int i = 0; i < game.getMoveCount(); i++) {
+                int move = game.getMove(i);
+                if (move != GameRecord.PASS) {
+                    long flips = BitBoard.computeFlips(move, own, opp);
+                    if (flips == 0 || ((own | opp) & (1L << move)) != 0) {
+                        throw new IllegalStateException("archived move " + i + " " + BitBoard.nameOf(move) + " is not valid");
+                    }
+                    sample(own, opp, player == BitBoard.BLACK ? blackMargin : -blackMargin, validation);
+                    long placed = own | flips | (1L << move);
+                    own = opp & ~flips;
+                    opp = placed;
+                } else {
+                    long swap = own;
+                    own = opp;
+                    opp = swap;
+                }
+                player = BitBoard.opponentOf(player);
+            }
+        }
+
+        /**
+         * scores one position with the current weights and adds its error to the gradient or the validation totals
+         * @param margin final disc difference from the view of own
+         */
+        private void sample(long own, long opp, int margin, boolean validation) {
+            int base = Patterns.phaseOf(Long.bitCount(own | opp)) * Patterns.TABLE_SIZE;
+            float predicted = 0;
+            for (int i = 0; i < Patterns.INSTANCES; i++) {
+                features[i] = base + Patterns.OFFSET_OF[i] + Patterns.indexOf(i, own, opp);
+                predicted += weights[features[i]];
+            }
+            float error = predicted - margin;
+            if (validation) {
+                validationSamples++;
+                validationSquaredError += error * error;
+                validationAbsoluteError += Math.abs(error);
+                return;
+            }
+            trainSamples++;
+            trainSquaredError += error * error;
+            for (int feature : features) {
+                if (occurrences[feature]++ == 0) {
+                    touched[touchedCount++] = feature;
+                }
+                gradient[feature] += error;
+            }
+        }
+    }
+
+    /**
+     * start from existing weights instead of zero
+     * @param start weights to continue training
+     */
+    public void setWeights(PatternWeights start) {
+        short[][] table = start.getWeights();
+        for (int phase = 0; phase < PatternWeights.PHASES; phase++) {
+            for (int i = 0; i < Patterns.TABLE_SIZE; i++) {
+                weights[phase * Patterns.TABLE_SIZE + i] = table[phase][i] / (float) PatternWeights.SCALE;
+            }
+        }
+    }
+
+    /**
+     * get the weights trained so far, rounded to PatternWeights.SCALE per disc
+     * @return weights the evaluator can use
+     */
+    public PatternWeights getWeights() {
+        short[][] table = new short[PatternWeights.PHASES][Patterns.TABLE_SIZE];
+        for (int phase = 0; phase < PatternWeights.PHASES; phase++) {
+            for (int i = 0; i < Patterns.TABLE_SIZE; i++) {
+                long scaled = Math.round(weights[phase * Patterns.TABLE_SIZE + i] * (double) PatternWeights.SCALE);
+                table[phase][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+            }
+        }
+        return new PatternWeights(table);
+    }
+
+    /**
+     * Trains for a number of epochs, printing samples/sec and the training and validation error of each,
+     * and writing the weights after every epoch so an interrupted run keeps its progress.
+     * @param archive game archive to learn from
+     * @param output weight file to write
+     * @param epochs passes over the archive
+     * @throws IOException if the archive can not be read or the weights written
+     */
+    public void train(Path archive, Path output, int epochs) throws IOException {
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker());
+        }
+        BlockingQueue<Batch> free = new ArrayBlockingQueue<>(threads * BATCHES_PER_THREAD);
+        BlockingQueue<Batch> full = new ArrayBlockingQueue<>(threads * BATCHES_PER_THREAD + threads);
+        for (int i = 0; i < threads * BATCHES_PER_THREAD; i++) {
+            free.add(new Batch(gamesPerBatch));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "trainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+                long start = System.nanoTime();
+                List<Future<?>> running = new ArrayList<>();
+                for (Worker worker : workers) {
+                    worker.resetTotals();
+                    running.add(pool.submit(() -> {
+                        worker.run(full, free);
+                        return null;
+                    }));
+                }
+                long games = 0;
+                try (GameArchiveReader reader = GameArchiveReader.open(archive)) {
+                    while (true) {
+                        Batch batch = free.take();
+                        batch.firstGame = games;
+                        batch.count = 0;
+                        while (batch.count < gamesPerBatch && reader.next(batch.games[batch.count])) {
+                            batch.count++;
+                        }
+                        games += batch.count;
+                        if (batch.count == 0) {
+                            free.put(batch);
+                            break;
+                        }
+                        full.put(batch);
+                    }
+                } finally {
+                    for (int i = 0; i < threads; i++) {
+                        full.put(END);
+                    }
+                    for (Future<?> worker : running) {
+                        worker.get();
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+
+                long trainSamples = 0;
+                double trainSquaredError = 0;
+                long validationSamples = 0;
+                double validationSquaredError = 0;
+                double validationAbsoluteError = 0;
+                for (Worker worker : workers) {
+                    if (worker.failure != null) {
+                        throw worker.failure;
+                    }
+                    trainSamples += worker.trainSamples;
+                    trainSquaredError += worker.trainSquaredError;
+                    validationSamples += worker.validationSamples;
+                    validationSquaredError += worker.validationSquaredError;
+                    validationAbsoluteError += worker.validationAbsoluteError;
+                }
+                getWeights().write(output);
+                System.out.printf("epoch %d: %,d games, %,d samples, %,.0f samples/sec, train rms %.2f, "
+                                + "validation rms %.2f mean abs %.2f discs%n", epoch, games,
+                        trainSamples + validationSamples, (trainSamples + validationSamples) * 1e9 / nanos,
+                        Math.sqrt(trainSquaredError / Math.max(1, trainSamples)),
+                        Math.sqrt(validationSquaredError / Math.max(1, validationSamples)),
+                        validationAbsoluteError / Math.max(1, validationSamples));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("trainer worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Trains pattern weights on an archive, for example one written by Tournament, and writes a weight file
+     * for the evaluator.
+     * Arguments: archive, weight file, [epochs] [threads] [games per batch] [learning rate] [start weights]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: PatternTrainer <archive> <weight file> [epochs] [threads] [games per batch] [learning rate] [start weights]");
+            return;
+        }
+        Path archive = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int gamesPerBatch = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        float learningRate = args.length > 5 ? Float.parseFloat(args[5]) : 0.002f;
+
+        PatternTrainer trainer = new PatternTrainer(threads, gamesPerBatch, learningRate);
+        if (args.length > 6) {
+            trainer.setWeights(PatternWeights.load(Paths.get(args[6])));
+        }
+        System.out.println("training on " + archive + " with " + threads + " threads, " + gamesPerBatch
+                + " games per batch, learning rate " + learningRate);
+        trainer.train(archive, output, epochs);
+    }
+}
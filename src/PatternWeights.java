@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class PatternWeights {
+    public static final int PHASES = 15;
+    public static final int DISCS_PER_PHASE = 4;
+    public static final int SCALE = 100; // a weight of SCALE is worth one disc of final margin
+
+    // file layout: magic, version, phases, kinds, the size of each kind, then every phase's table of shorts
+    static final int MAGIC = 0x31575645; // "EVW1"
+    static final int VERSION = 1;
+
+    private final short[][] ownToMove;   // [phase][weight], digit 1 is the player to move
+    private final short[][] blackDigits; // the same weights indexed with digit 1 for black, used when white is to move
+
+    /**
+     * Describes the weights of every pattern for every phase.
+     * The evaluator keeps its indices with black as digit 1, so a second copy of each table is made with the digits swapped,
+     * which lets an evaluation look up every pattern with one array access whichever colour is to move.
+     * @param weights [phase][Patterns.TABLE_SIZE] weights with digit 1 for the player to move
+     */
+    public PatternWeights(short[][] weights) {
+        if (weights.length != PHASES) {
+            throw new IllegalArgumentException("expected " + PHASES + " phases, got " + weights.length);
+        }
+        ownToMove = weights;
+        blackDigits = new short[PHASES][Patterns.TABLE_SIZE];
+        for (int kind = 0; kind < Patterns.KINDS; kind++) {
+            int size = Patterns.KIND_SIZES[kind];
+            int offset = Patterns.KIND_OFFSETS[kind];
+            for (int index = 0; index < Patterns.pow3(size); index++) {
+                int swapped = offset + Patterns.swapColours(index, size);
+                for (int phase = 0; phase < PHASES; phase++) {
+                    blackDigits[phase][offset + index] = weights[phase][swapped];
+                }
+            }
+        }
+    }
+
+    /**
+     * all weights zero, an evaluator with these scores every position 0
+     * @return weights
+     */
+    public static PatternWeights zero() {
+        return new PatternWeights(new short[PHASES][Patterns.TABLE_SIZE]);
+    }
+
+    /**
+     * get the table to look black-digit indices up in
+     * @param player 1 or 2, the player to move
+     * @param phase 0..PHASES-1
+     * @return weights
+     */
+    short[] tableFor(int player, int phase) {
+        return player == BitBoard.BLACK ? ownToMove[phase] : blackDigits[phase];
+    }
+
+    /**
+     * get the weights with digit 1 for the player to move, the arrays are shared
+     * @return [phase][weight]
+     */
+    public short[][] getWeights() {
+        return ownToMove;
+    }
+
+    /**
+     * reads a weight file
+     * @param path of the weights
+     * @return weights
+     * @throws IOException if the file can not be read
+     */
+    public static PatternWeights load(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int headerBytes = 16 + 4 * Patterns.KINDS;
+        if (buffer.capacity() < headerBytes || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                || buffer.getInt() != PHASES || buffer.getInt() != Patterns.KINDS) {
+            throw new IllegalArgumentException("not a pattern weight file for these patterns");
+        }
+        for (int kind = 0; kind < Patterns.KINDS; kind++) {
+            if (buffer.getInt() != Patterns.KIND_SIZES[kind]) {
+                throw new IllegalArgumentException("pattern weight file has other pattern sizes");
+            }
+        }
+        if (buffer.remaining() != 2L * PHASES * Patterns.TABLE_SIZE) {
+            throw new IllegalArgumentException("pattern weight file has the wrong length");
+        }
+        short[][] weights = new short[PHASES][Patterns.TABLE_SIZE];
+        for (short[] phase : weights) {
+            buffer.asShortBuffer().get(phase);
+            buffer.position(buffer.position() + 2 * phase.length);
+        }
+        return new PatternWeights(weights);
+    }
+
+    /**
+     * writes the weights
+     * @param path of the weight file
+     * @throws IOException if the file can not be written
+     */
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer block = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            block.putInt(MAGIC).putInt(VERSION).putInt(PHASES).putInt(Patterns.KINDS);
+            for (int kind = 0; kind < Patterns.KINDS; kind++) {
+                block.putInt(Patterns.KIND_SIZES[kind]);
+            }
+            for (short[] phase : ownToMove) {
+                for (short weight : phase) {
+                    if (block.remaining() < 2) {
+                        flush(channel, block);
+                    }
+                    block.putShort(weight);
+                }
+            }
+            flush(channel, block);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer block) throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear();
+    }
+}
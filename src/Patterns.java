@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class Patterns {
+    // pattern kinds, every kind appears in each orientation of the board and its instances share one weight table
+    public static final int EDGE_2X = 0;    // an edge and its two X squares
+    public static final int CORNER_3X3 = 1;
+    public static final int CORNER_2X5 = 2;
+    public static final int ROW_2 = 3;      // the lines one, two and three squares in from an edge
+    public static final int ROW_3 = 4;
+    public static final int ROW_4 = 5;
+    public static final int DIAGONAL_8 = 6;
+    public static final int DIAGONAL_7 = 7;
+    public static final int DIAGONAL_6 = 8;
+    public static final int DIAGONAL_5 = 9;
+    public static final int DIAGONAL_4 = 10;
+    public static final int KINDS = 11;
+
+    static final String[] KIND_NAMES = {"edge+2X", "corner 3x3", "corner 2x5", "row 2", "row 3", "row 4",
+            "diagonal 8", "diagonal 7", "diagonal 6", "diagonal 5", "diagonal 4"};
+
+    // squares of each kind in one orientation as x, y pairs, a1 is 0, 0
+    private static final int[][] BASE = {
+            {0, 0, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0, 7, 0, 1, 1, 6, 1},
+            {0, 0, 1, 0, 2, 0, 0, 1, 1, 1, 2, 1, 0, 2, 1, 2, 2, 2},
+            {0, 0, 1, 0, 2, 0, 3, 0, 4, 0, 0, 1, 1, 1, 2, 1, 3, 1, 4, 1},
+            {0, 1, 1, 1, 2, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 1},
+            {0, 2, 1, 2, 2, 2, 3, 2, 4, 2, 5, 2, 6, 2, 7, 2},
+            {0, 3, 1, 3, 2, 3, 3, 3, 4, 3, 5, 3, 6, 3, 7, 3},
+            {0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7},
+            {0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7},
+            {0, 2, 1, 3, 2, 4, 3, 5, 4, 6, 5, 7},
+            {0, 3, 1, 4, 2, 5, 3, 6, 4, 7},
+            {0, 4, 1, 5, 2, 6, 3, 7},
+    };
+
+    static final int[] KIND_SIZES = new int[KINDS];
+    static final int[] KIND_OFFSETS = new int[KINDS]; // start of each kind in a phase's weight table
+    static final int TABLE_SIZE;                       // weights per phase
+
+    static final int[][] SQUARES;       // squares of each instance, first square is the lowest digit of the index
+    static final int[] KIND_OF;         // kind of each instance
+    static final int[] OFFSET_OF;       // KIND_OFFSETS of each instance's kind
+    public static final int INSTANCES;
+
+    // instances each square is part of and its power of 3 in their index, squares 0..63 run from MEMBER_START
+    static final int[] MEMBER_START = new int[65];
+    static final int[] MEMBER_INSTANCE;
+    static final int[] MEMBER_POWER;
+
+    static {
+        List<int[]> squares = new ArrayList<>();
+        List<Integer> kinds = new ArrayList<>();
+        int offset = 0;
+        for (int kind = 0; kind < KINDS; kind++) {
+            KIND_SIZES[kind] = BASE[kind].length / 2;
+            KIND_OFFSETS[kind] = offset;
+            offset += pow3(KIND_SIZES[kind]);
+            // the 8 symmetries of the board, keeping one instance per distinct set of squares
+            List<Long> seen = new ArrayList<>();
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                int[] instance = new int[KIND_SIZES[kind]];
+                long mask = 0L;
+                for (int i = 0; i < instance.length; i++) {
+                    instance[i] = Symmetry.transformSquare(BitBoard.squareOf(BASE[kind][2 * i], BASE[kind][2 * i + 1]), symmetry);
+                    mask |= 1L << instance[i];
+                }
+                if (!seen.contains(mask)) {
+                    seen.add(mask);
+                    squares.add(instance);
+                    kinds.add(kind);
+                }
+            }
+        }
+        TABLE_SIZE = offset;
+        INSTANCES = squares.size();
+        SQUARES = squares.toArray(new int[0][]);
+        KIND_OF = new int[INSTANCES];
+        OFFSET_OF = new int[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            KIND_OF[i] = kinds.get(i);
+            OFFSET_OF[i] = KIND_OFFSETS[KIND_OF[i]];
+        }
+
+        int[] memberCount = new int[64];
+        for (int[] instance : SQUARES) {
+            for (int square : instance) {
+                memberCount[square]++;
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            MEMBER_START[square + 1] = MEMBER_START[square] + memberCount[square];
+        }
+        MEMBER_INSTANCE = new int[MEMBER_START[64]];
+        MEMBER_POWER = new int[MEMBER_START[64]];
+        int[] next = Arrays.copyOf(MEMBER_START, 64);
+        for (int i = 0; i < INSTANCES; i++) {
+            for (int digit = 0; digit < SQUARES[i].length; digit++) {
+                int square = SQUARES[i][digit];
+                MEMBER_INSTANCE[next[square]] = i;
+                MEMBER_POWER[next[square]] = pow3(digit);
+                next[square]++;
+            }
+        }
+    }
+
+    private Patterns() {
+    }
+
+    static int pow3(int exponent) {
+        int power = 1;
+        for (int i = 0; i < exponent; i++) {
+            power *= 3;
+        }
+        return power;
+    }
+
+    /**
+     * Computes the index of a pattern instance from scratch.
+     * Each square is a base 3 digit: 0 empty, 1 a disc of own, 2 a disc of opp.
+     * @param instance 0..INSTANCES-1
+     * @param own discs whose digit is 1
+     * @param opp discs whose digit is 2
+     * @return index into the instance's kind of weight table
+     */
+    public static int indexOf(int instance, long own, long opp) {
+        int[] squares = SQUARES[instance];
+        int index = 0;
+        for (int digit = squares.length - 1; digit >= 0; digit--) {
+            long bit = 1L << squares[digit];
+            index = index * 3 + ((own & bit) != 0 ? 1 : (opp & bit) != 0 ? 2 : 0);
+        }
+        return index;
+    }
+
+    /**
+     * swap the digits 1 and 2 of an index, which turns an index from one player's view into the other's
+     * @param index base 3 index
+     * @param size number of digits
+     * @return index with own and opp exchanged
+     */
+    static int swapColours(int index, int size) {
+        int swapped = 0;
+        for (int digit = 0, power = 1; digit < size; digit++, power *= 3) {
+            int value = index / power % 3;
+            swapped += (value == 0 ? 0 : 3 - value) * power;
+        }
+        return swapped;
+    }
+
+    /**
+     * game phase of a position, the weights of each phase are trained separately
+     * @param discs discs on the board, 4..64
+     * @return phase 0..PatternWeights.PHASES-1
+     */
+    public static int phaseOf(int discs) {
+        return Math.min(PatternWeights.PHASES - 1, (discs - 4) / PatternWeights.DISCS_PER_PHASE);
+    }
+}
@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Perft {
+    public static final int PASS = 64; // first move of a divide line when the side to move has to pass
+
+    // leaf counts from the start position for depths 1.., a pass uses up a ply and a finished game is one leaf
+    static final long[] START_COUNTS = {4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L,
+            212258800L, 1939886636L, 18429641748L};
+
+    private static final int SPLIT_DEPTH = 3; // plies expanded before the subtrees are shared out in parallel mode
+
+    private final int hashSizeMB;
+    private final ThreadLocal<Table> tables;
+
+    /**
+     * Describes a perft counter: it counts the leaves of the game tree to a fixed depth
+     * with the same rules as Board, so a move generator can be checked against known counts.
+     * @param hashSizeMB memory of each thread's table of counted subtrees, 0 to count without one
+     */
+    public Perft(int hashSizeMB) {
+        this.hashSizeMB = hashSizeMB;
+        tables = ThreadLocal.withInitial(() -> hashSizeMB > 0 ? new Table(hashSizeMB) : null);
+    }
+
+    /**
+     * Table of subtree counts keyed by the discs and the remaining depth.
+     * The colour to move does not change the count, so positions reached by either player share entries.
+     */
+    private static class Table {
+        private final long[] owns;
+        private final long[] opps;
+        private final long[] counts; // count << 8 | depth, 0 when empty
+        private final int mask;
+
+        Table(int sizeMB) {
+            int entries = (int) Math.min(1L << 28, Long.highestOneBit((long) sizeMB * 1024 * 1024 / 24));
+            owns = new long[entries];
+            opps = new long[entries];
+            counts = new long[entries];
+            mask = entries - 1;
+        }
+
+        int slotOf(long own, long opp, int depth) {
+            long h = (own * 0x9E3779B97F4A7C15L) ^ (opp * 0xC2B2AE3D27D4EB4FL) ^ depth;
+            return (int) (h ^ (h >>> 29)) & mask;
+        }
+
+        long probe(long own, long opp, int depth) {
+            int slot = slotOf(own, opp, depth);
+            long entry = counts[slot];
+            return entry != 0 && (entry & 0xFF) == depth && owns[slot] == own && opps[slot] == opp ? entry >>> 8 : -1;
+        }
+
+        void store(long own, long opp, int depth, long count) {
+            int slot = slotOf(own, opp, depth);
+            owns[slot] = own;
+            opps[slot] = opp;
+            counts[slot] = count << 8 | depth;
+        }
+    }
+
+    /**
+     * count leaves to a depth
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param depth plies, a pass is a ply
+     * @return leaf count, a game that ends earlier counts once
+     */
+    public long count(long own, long opp, int depth) {
+        return count(own, opp, depth, tables.get());
+    }
+
+    private static long count(long own, long opp, int depth, Table table) {
+        long moves = BitBoard.generateMoves(own, opp);
+        if (moves == 0) {
+            if (BitBoard.generateMoves(opp, own) == 0) {
+                return 1; // game over
+            }
+            return depth == 1 ? 1 : count(opp, own, depth - 1, table);
+        }
+        if (depth == 1) {
+            return Long.bitCount(moves);
+        }
+        if (table != null && depth > 2) {
+            long stored = table.probe(own, opp, depth);
+            if (stored >= 0) {
+                return stored;
+            }
+        }
+        long leaves = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.computeFlips(square, own, opp);
+            leaves += count(opp ^ flips, own | flips | (1L << square), depth - 1, table);
+        }
+        if (table != null && depth > 2) {
+            table.store(own, opp, depth, leaves);
+        }
+        return leaves;
+    }
+
+    /**
+     * Counts leaves below every first move.
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param depth plies, 1 or more
+     * @param threads threads sharing the subtrees, 1 counts on the calling thread
+     * @return pairs of first move (square index, or PASS) and leaf count; empty when the game is over
+     */
+    public long[][] divide(long own, long opp, int depth, int threads) {
+        List<long[]> firstMoves = new ArrayList<>();
+        long moves = BitBoard.generateMoves(own, opp);
+        if (moves == 0 && BitBoard.generateMoves(opp, own) != 0) {
+            firstMoves.add(new long[]{PASS, opp, own});
+        }
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.computeFlips(square, own, opp);
+            firstMoves.add(new long[]{square, opp ^ flips, own | flips | (1L << square)});
+        }
+
+        long[][] result = new long[firstMoves.size()][2];
+        if (threads <= 1) {
+            for (int i = 0; i < result.length; i++) {
+                long[] first = firstMoves.get(i);
+                result[i][0] = first[0];
+                result[i][1] = depth == 1 ? 1 : count(first[1], first[2], depth - 1);
+            }
+            return result;
+        }
+
+        // share subtrees a few plies down so the threads get enough pieces to balance
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<List<Future<Long>>> subtrees = new ArrayList<>();
+            for (long[] first : firstMoves) {
+                List<Future<Long>> parts = new ArrayList<>();
+                split(first[1], first[2], depth - 1, Math.min(SPLIT_DEPTH - 1, depth - 1), workers, parts);
+                subtrees.add(parts);
+            }
+            for (int i = 0; i < result.length; i++) {
+                result[i][0] = firstMoves.get(i)[0];
+                for (Future<Long> part : subtrees.get(i)) {
+                    result[i][1] += part.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("perft interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("perft worker failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * expands splitPlies plies and submits a count for each position reached
+     */
+    private void split(long own, long opp, int depth, int splitPlies, ExecutorService workers, List<Future<Long>> parts) {
+        long moves = BitBoard.generateMoves(own, opp);
+        if (splitPlies == 0 || depth <= 1 || (moves == 0 && BitBoard.generateMoves(opp, own) == 0)) {
+            parts.add(workers.submit(() -> depth == 0 ? 1L : count(own, opp, depth)));
+            return;
+        }
+        if (moves == 0) {
+            split(opp, own, depth - 1, splitPlies - 1, workers, parts);
+            return;
+        }
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.computeFlips(square, own, opp);
+            split(opp ^ flips, own | flips | (1L << square), depth - 1, splitPlies - 1, workers, parts);
+        }
+    }
+
+    /**
+     * Reads a position written as 64 squares from a1 to h8, row by row,
+     * X or * for black, O for white, - or . for empty, followed by X or O for the side to move.
+     * @param position text of the position, spaces are ignored
+     * @return own, opp and player to move
+     */
+    public static long[] parsePosition(String position) {
+        String squares = position.replace(" ", "");
+        if (squares.length() != 65) {
+            throw new IllegalArgumentException("expected 64 squares and the side to move: " + position);
+        }
+        long black = 0L;
+        long white = 0L;
+        for (int square = 0; square < 64; square++) {
+            char c = Character.toUpperCase(squares.charAt(square));
+            if (c == 'X' || c == '*') {
+                black |= 1L << square;
+            } else if (c == 'O') {
+                white |= 1L << square;
+            } else if (c != '-' && c != '.') {
+                throw new IllegalArgumentException("unknown square '" + c + "' in " + position);
+            }
+        }
+        char side = Character.toUpperCase(squares.charAt(64));
+        if (side != 'X' && side != '*' && side != 'O') {
+            throw new IllegalArgumentException("unknown side to move '" + side + "' in " + position);
+        }
+        return side == 'O' ? new long[]{white, black, BitBoard.WHITE} : new long[]{black, white, BitBoard.BLACK};
+    }
+
+    /**
+     * Counts leaves to each depth up to the given one and prints nodes/sec.
+     * From the start position every count is checked against the known perft counts and the exit status is 1 on a mismatch.
+     * Arguments: depth [-divide] [-hash MB] [-threads N] [-position squares]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: Perft <depth> [-divide] [-hash MB] [-threads N] [-position <64 squares + side>]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        boolean divide = false;
+        int hashSizeMB = 0;
+        int threads = 1;
+        long[] root = {BitBoard.START_BLACK, BitBoard.START_WHITE, BitBoard.BLACK};
+        boolean fromStart = true;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-divide":
+                    divide = true;
+                    break;
+                case "-hash":
+                    hashSizeMB = Integer.parseInt(args[++i]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-position":
+                    root = parsePosition(args[++i]);
+                    fromStart = false;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        Perft perft = new Perft(hashSizeMB);
+        boolean allMatch = true;
+        for (int d = divide ? depth : 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long[][] firstMoves = perft.divide(root[0], root[1], d, threads);
+            long nanos = System.nanoTime() - start;
+            long leaves = firstMoves.length == 0 ? 1 : 0;
+            for (long[] firstMove : firstMoves) {
+                leaves += firstMove[1];
+                if (divide) {
+                    System.out.printf("%-4s %,d%n", firstMove[0] == PASS ? "pass" : BitBoard.nameOf((int) firstMove[0]),
+                            firstMove[1]);
+                }
+            }
+            String check = "";
+            if (fromStart && d <= START_COUNTS.length) {
+                boolean match = leaves == START_COUNTS[d - 1];
+                allMatch &= match;
+                check = match ? "  ok" : "  MISMATCH, expected " + START_COUNTS[d - 1];
+            }
+            System.out.printf("perft %2d: %,18d  %8.3f s  %,14.0f nodes/sec%s%n", d, leaves, nanos / 1e9,
+                    leaves * 1e9 / Math.max(1, nanos), check);
+        }
+        if (!allMatch) {
+            System.exit(1);
+        }
+    }
+}
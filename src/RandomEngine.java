@@ -0,0 +1,23 @@
+import java.util.SplittableRandom;
+
+public class RandomEngine implements Engine {
+
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public void newGame(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Chooses a random valid move.
+     */
+    @Override
+    public int chooseMove(long own, long opp, int player) {
+        long moves = BitBoard.generateMoves(own, opp);
+        for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+}
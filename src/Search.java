@@ -0,0 +1,484 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Search {
+    public static final int NO_MOVE = -1;
+    public static final int INFINITY = 1000000;
+    public static final int WIN_SCORE = 100000; // final positions score WIN_SCORE + disc difference
+    private static final int MAX_DEPTH = 60;
+    private static final int TIME_CHECK_INTERVAL = 1023; // look at the clock every 1024 nodes
+    private static final int DEFAULT_ENDGAME_EMPTIES = 18;
+    private static final int WIN_LOSS_DRAW_EXTRA_EMPTIES = 2; // just before the exact solve only win/loss/draw is solved
+
+    private static final long CORNERS = 0x8100000000000081L;
+    // squares next to an empty corner, giving the corner away
+    private static final long X_SQUARES = 0x0042000000004200L;
+    private static final long C_SQUARES = 0x4281000000008142L;
+
+    private long timeBudgetMillis;
+    private int maxDepth = MAX_DEPTH;
+    private TranspositionTable table;
+    private AtomicBoolean stopSignal = new AtomicBoolean();
+    private boolean helper; // helper threads of a parallel search leave the table and the endgame to the main thread
+    private int depthOffset; // helpers may look ahead of the main thread
+    private EndgameSolver endgameSolver; // null when the midgame search plays to the end
+    private int endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+    private long endgameTimeBudgetMillis; // 0 gives the solver three quarters of the time budget
+    private PatternEvaluator evaluator; // null to use the built-in heuristic
+    private SearchListener listener; // null when nobody follows the progress
+    private long excludedMoves; // root moves left out, for scoring the second best move and so on
+    private SearchMetrics metrics; // null when nothing is counted
+
+    private long deadline;
+    private boolean stopped;
+    private long nodes;
+    private long elapsedMillis;
+    private int completedDepth;
+    private int bestScore;
+
+    /**
+     * Describes a negamax alpha-beta search with iterative deepening
+     * @param timeBudgetMillis time allowed per move
+     * @param table transposition table shared by every search of this player
+     */
+    public Search(long timeBudgetMillis, TranspositionTable table) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.table = table;
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * limit how deep iterative deepening goes
+     * @param maxDepth deepest iteration, in plies
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, Math.min(MAX_DEPTH, maxDepth));
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * share a stop flag with other searches, setting it ends every search watching it
+     * @param stopSignal flag checked while searching
+     */
+    public void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+        if (endgameSolver != null) {
+            endgameSolver.setStopSignal(stopSignal);
+        }
+    }
+
+    /**
+     * let a perfect-play solver take over near the end of the game
+     * @param endgameSolver solver to use, null to search to the end with the midgame search
+     */
+    public void setEndgameSolver(EndgameSolver endgameSolver) {
+        this.endgameSolver = endgameSolver;
+        if (endgameSolver != null) {
+            endgameSolver.setStopSignal(stopSignal);
+        }
+    }
+
+    public EndgameSolver getEndgameSolver() {
+        return endgameSolver;
+    }
+
+    /**
+     * set when the endgame solver takes over
+     * @param endgameEmpties most empty squares solved exactly
+     */
+    public void setEndgameEmpties(int endgameEmpties) {
+        this.endgameEmpties = endgameEmpties;
+    }
+
+    /**
+     * limit the time of the endgame solver on its own, for searches whose budget is not a real limit such as pondering
+     * @param endgameTimeBudgetMillis time the solver may use before the midgame search takes over,
+     *                                0 for three quarters of the time budget
+     */
+    public void setEndgameTimeBudgetMillis(long endgameTimeBudgetMillis) {
+        this.endgameTimeBudgetMillis = endgameTimeBudgetMillis;
+    }
+
+    /**
+     * evaluate leaves with pattern weights instead of the built-in heuristic
+     * @param evaluator evaluator of this search alone, null for the heuristic
+     */
+    public void setEvaluator(PatternEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * report every finished iteration, for showing the progress of a long search
+     * @param listener called on the searching thread, null for none
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * count table use, cutoffs and endgame solves into metrics of this search alone
+     * @param metrics counters to add to, null to count nothing
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Leave some moves out at the root, so searching again without the best move finds the next best.
+     * The endgame solver is skipped while moves are excluded, the midgame search solves the end itself.
+     * @param excludedMoves mask of root moves not to search, 0 to search every move
+     */
+    public void setExcludedMoves(long excludedMoves) {
+        this.excludedMoves = excludedMoves;
+    }
+
+    /**
+     * make this search a helper of a parallel search.
+     * Helpers search depth + depthOffset in each iteration and leave ageing the table
+     * and solving the endgame to the main search.
+     * @param depthOffset extra plies per iteration, 0 or more
+     */
+    public void setHelper(int depthOffset) {
+        this.helper = true;
+        this.depthOffset = depthOffset;
+    }
+
+    /**
+     * ask a running search to return the move of its last finished depth, at least the first depth is finished
+     */
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    /**
+     * Searches deeper and deeper until the time budget runs out.
+     * The move of the last fully searched depth is returned, an unfinished iteration is thrown away.
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param player 1 or 2, colour of own
+     * @return square index of the best move, or NO_MOVE if there is no valid move
+     */
+    public int findBestMove(long own, long opp, int player) {
+        long start = System.currentTimeMillis();
+        deadline = start + timeBudgetMillis;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        bestScore = 0;
+        if (!helper) {
+            table.newSearch();
+        }
+
+        long moves = BitBoard.generateMoves(own, opp) & ~excludedMoves;
+        if (moves == 0) {
+            elapsedMillis = 0;
+            return NO_MOVE;
+        }
+        int empties = Long.bitCount(~(own | opp));
+        if (empties <= endgameEmpties + WIN_LOSS_DRAW_EXTRA_EMPTIES && excludedMoves == 0) {
+            if (helper) {
+                return NO_MOVE; // the solver is single threaded, helpers have nothing to add
+            }
+            if (endgameSolver != null) {
+                // leave a quarter of the budget to the midgame search in case the solve does not finish
+                long solveBudget = endgameTimeBudgetMillis > 0 ? endgameTimeBudgetMillis : timeBudgetMillis / 4 * 3;
+                long solveStart = metrics == null ? 0 : System.nanoTime();
+                int move = endgameSolver.findBestMove(own, opp, player, empties <= endgameEmpties, start + solveBudget);
+                nodes += endgameSolver.getNodes();
+                if (metrics != null) {
+                    metrics.endgameSolved(endgameSolver.getNodes(), System.nanoTime() - solveStart, !endgameSolver.isSolved());
+                }
+                // a stopped solve may still have proven a move, such as a win found by the win/loss/draw pass
+                if (move != EndgameSolver.NO_MOVE) {
+                    int diff = endgameSolver.getScore();
+                    bestScore = diff > 0 ? WIN_SCORE + diff : diff < 0 ? -WIN_SCORE + diff : 0;
+                    completedDepth = empties;
+                    elapsedMillis = System.currentTimeMillis() - start;
+                    if (listener != null) {
+                        listener.iterationFinished(completedDepth, move, bestScore, nodes);
+                    }
+                    if (metrics != null) {
+                        metrics.searchFinished(nodes);
+                    }
+                    return move;
+                }
+                // nothing proven, the midgame search below starts from the table's move instead of guessing
+            }
+        }
+
+        long hash = player == BitBoard.BLACK ? Zobrist.hash(own, opp, player) : Zobrist.hash(opp, own, player);
+        if (evaluator != null) {
+            evaluator.setPosition(player == BitBoard.BLACK ? own : opp, player == BitBoard.BLACK ? opp : own);
+        }
+        long rootEntry = table.probe(hash);
+        int bestMove = rootEntry == TranspositionTable.MISS ? NO_MOVE : TranspositionTable.moveOf(rootEntry);
+        if (bestMove == NO_MOVE || (moves & (1L << bestMove)) == 0) {
+            bestMove = Long.numberOfTrailingZeros(moves);
+        }
+
+        for (int depth = 1 + depthOffset; depth <= maxDepth; depth++) {
+            SearchIterationEvent event = new SearchIterationEvent();
+            event.begin();
+            int alpha = -INFINITY;
+            int iterationBest = NO_MOVE;
+            // search the best move of the previous depth first so cutoffs come early
+            int square = bestMove;
+            long remaining = moves & ~(1L << bestMove);
+            while (true) {
+                int score = -searchMove(own, opp, hash, player, square, depth - 1, -INFINITY, -alpha);
+                if (stopped) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = square;
+                }
+                if (remaining == 0) {
+                    break;
+                }
+                square = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+            }
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.nodes = nodes;
+                event.bestMove = iterationBest == NO_MOVE ? null : BitBoard.nameOf(iterationBest);
+                event.score = alpha;
+                event.completed = !stopped;
+                event.helper = helper;
+                event.commit();
+            }
+            if (stopped) {
+                break;
+            }
+            bestMove = iterationBest;
+            bestScore = alpha;
+            completedDepth = depth;
+            if (excludedMoves == 0) {
+                table.store(hash, depth, TranspositionTable.EXACT, alpha, bestMove);
+            }
+            if (listener != null) {
+                listener.iterationFinished(depth, bestMove, alpha, nodes);
+            }
+            if (metrics != null) {
+                metrics.iterationFinished();
+            }
+            // nothing left to learn once the whole game has been searched
+            if (depth >= empties || Math.abs(alpha) >= WIN_SCORE) {
+                break;
+            }
+        }
+        elapsedMillis = System.currentTimeMillis() - start;
+        if (metrics != null) {
+            metrics.searchFinished(nodes);
+        }
+        return bestMove;
+    }
+
+    /**
+     * plays square for own and searches the resulting position
+     * @return score from the side that moves next, i.e. the opponent of own
+     */
+    private int searchMove(long own, long opp, long hash, int player, int square, int depth, int alpha, int beta) {
+        long flips = BitBoard.computeFlips(square, own, opp);
+        long childHash = hash ^ Zobrist.key(player, square) ^ Zobrist.flipKeys(flips) ^ Zobrist.WHITE_TO_MOVE;
+        if (evaluator == null) {
+            return negamax(opp & ~flips, own | flips | (1L << square), childHash, BitBoard.opponentOf(player), depth, alpha, beta, false);
+        }
+        evaluator.makeMove(square, flips, player);
+        int score = negamax(opp & ~flips, own | flips | (1L << square), childHash, BitBoard.opponentOf(player), depth, alpha, beta, false);
+        evaluator.unmakeMove(square, flips, player);
+        return score;
+    }
+
+    /**
+     * score of a position from the side to move
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @param hash of the position
+     * @param player 1 or 2, colour of own
+     * @param depth plies left
+     * @param passed true if the previous ply was a pass
+     */
+    private int negamax(long own, long opp, long hash, int player, int depth, int alpha, int beta, boolean passed) {
+        // the first depth always finishes, it is small and a stopped search must still return a searched move
+        if ((++nodes & TIME_CHECK_INTERVAL) == 0 && completedDepth > 0
+                && (stopSignal.get() || System.currentTimeMillis() >= deadline)) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        long moves = BitBoard.generateMoves(own, opp);
+        if (moves == 0) {
+            if (passed) {
+                return finalScore(own, opp);
+            }
+            return -negamax(opp, own, hash ^ Zobrist.WHITE_TO_MOVE, BitBoard.opponentOf(player), depth, -beta, -alpha, true);
+        }
+        if (depth == 0) {
+            if (evaluator != null) {
+                // keep any evaluation below the score of a won game
+                int score = evaluator.evaluate(player, Long.bitCount(own | opp));
+                return Math.max(-WIN_SCORE + 1, Math.min(WIN_SCORE - 1, score));
+            }
+            return evaluate(own, opp);
+        }
+
+        int hashMove = NO_MOVE;
+        long entry = table.probe(hash);
+        if (metrics != null) {
+            metrics.tableProbed(entry != TranspositionTable.MISS, entry == TranspositionTable.MISS && table.isBucketTaken(hash));
+        }
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.moveOf(entry);
+            if (TranspositionTable.depthOf(entry) >= depth) {
+                int score = TranspositionTable.scoreOf(entry);
+                int bound = TranspositionTable.boundOf(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    if (metrics != null) {
+                        metrics.tableCutoff();
+                    }
+                    return score;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = NO_MOVE;
+        int searched = 0; // moves searched so far, after a cutoff the last one caused it
+        if (hashMove != NO_MOVE && (moves & (1L << hashMove)) != 0) {
+            searched++;
+            moves &= ~(1L << hashMove);
+            best = -searchMove(own, opp, hash, player, hashMove, depth - 1, -beta, -alpha);
+            bestMove = hashMove;
+            alpha = Math.max(alpha, best);
+        }
+        // corners first, squares next to corners last
+        for (int stage = 0; stage < 4 && alpha < beta; stage++) {
+            long group = moves & orderingGroup(stage);
+            for (; group != 0; group &= group - 1) {
+                int square = Long.numberOfTrailingZeros(group);
+                searched++;
+                int score = -searchMove(own, opp, hash, player, square, depth - 1, -beta, -alpha);
+                if (score > best) {
+                    best = score;
+                    bestMove = square;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (!stopped) {
+            int bound = best >= beta ? TranspositionTable.LOWER
+                    : best <= originalAlpha ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+            table.store(hash, depth, bound, best, bestMove);
+            if (metrics != null && bound == TranspositionTable.LOWER) {
+                metrics.cutoff(searched - 1);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * squares tried in one stage of move ordering
+     */
+    private static long orderingGroup(int stage) {
+        switch (stage) {
+            case 0:
+                return CORNERS;
+            case 1:
+                return ~(CORNERS | X_SQUARES | C_SQUARES);
+            case 2:
+                return C_SQUARES;
+            default:
+                return X_SQUARES;
+        }
+    }
+
+    /**
+     * score of a finished game, any win beats any evaluation
+     */
+    static int finalScore(long own, long opp) {
+        int diff = Long.bitCount(own) - Long.bitCount(opp);
+        if (diff > 0) {
+            return WIN_SCORE + diff;
+        } else if (diff < 0) {
+            return -WIN_SCORE + diff;
+        }
+        return 0;
+    }
+
+    /**
+     * static evaluation from corners, squares next to empty corners and mobility
+     * @param own discs of the player to move
+     * @param opp discs of the other player
+     * @return score, positive is good for the player to move
+     */
+    static int evaluate(long own, long opp) {
+        long empty = ~(own | opp);
+        long emptyCornerNeighbours = 0L;
+        if ((empty & 0x0000000000000001L) != 0) emptyCornerNeighbours |= 0x0000000000000302L;
+        if ((empty & 0x0000000000000080L) != 0) emptyCornerNeighbours |= 0x000000000000C040L;
+        if ((empty & 0x0100000000000000L) != 0) emptyCornerNeighbours |= 0x0203000000000000L;
+        if ((empty & 0x8000000000000000L) != 0) emptyCornerNeighbours |= 0x40C0000000000000L;
+
+        int corners = Long.bitCount(own & CORNERS) - Long.bitCount(opp & CORNERS);
+        int risky = Long.bitCount(own & emptyCornerNeighbours) - Long.bitCount(opp & emptyCornerNeighbours);
+        int mobility = Long.bitCount(BitBoard.generateMoves(own, opp)) - Long.bitCount(BitBoard.generateMoves(opp, own));
+        return 100 * corners - 30 * risky + 10 * mobility;
+    }
+
+    /**
+     * get number of positions visited by the last search
+     * @return nodes searched
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * get search speed of the last search
+     * @return nodes per second
+     */
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, elapsedMillis);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * get deepest fully searched depth of the last search
+     * @return depth in plies
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * get score of the returned move
+     * @return score from the side to move
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+}
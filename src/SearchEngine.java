@@ -0,0 +1,52 @@
+public class SearchEngine implements Engine {
+
+    private final Search search;
+    private final OpeningBook openingBook; // null when there is no book
+    private boolean lastMoveFromBook;
+
+    /**
+     * Describes a single-threaded alpha-beta engine
+     * @param search configured search
+     * @param openingBook book to check before searching, or null
+     */
+    public SearchEngine(Search search, OpeningBook openingBook) {
+        this.search = search;
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Forgets earlier games so a game only depends on its own moves.
+     */
+    @Override
+    public void newGame(long seed) {
+        search.getTable().clear();
+        if (search.getEndgameSolver() != null) {
+            search.getEndgameSolver().clear();
+        }
+    }
+
+    @Override
+    public int chooseMove(long own, long opp, int player) {
+        if (openingBook != null) {
+            int bookMove = player == BitBoard.BLACK ? openingBook.lookup(own, opp, player) : openingBook.lookup(opp, own, player);
+            if (bookMove != OpeningBook.NO_MOVE && (BitBoard.generateMoves(own, opp) & (1L << bookMove)) != 0) {
+                lastMoveFromBook = true;
+                return bookMove;
+            }
+        }
+        lastMoveFromBook = false;
+        return search.findBestMove(own, opp, player);
+    }
+
+    /**
+     * check where the last move came from, the search statistics only describe searched moves
+     * @return true if chooseMove took it from the opening book
+     */
+    public boolean isLastMoveFromBook() {
+        return lastMoveFromBook;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+}
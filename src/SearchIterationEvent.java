@@ -0,0 +1,32 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("othello.SearchIteration")
+@Label("Search Iteration")
+@Category({"Othello", "Search"})
+@Description("One depth of iterative deepening, its duration is the time the depth took")
+public class SearchIterationEvent extends Event {
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    @Description("Positions visited by this thread since the search started")
+    long nodes;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Completed")
+    @Description("False when time ran out or the search was stopped before the depth was done")
+    boolean completed;
+
+    @Label("Helper")
+    @Description("True for the helper threads of a parallel search")
+    boolean helper;
+}
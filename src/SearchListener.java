@@ -0,0 +1,12 @@
+public interface SearchListener {
+    /**
+     * Called by the searching thread each time an iteration of the main search finishes,
+     * or when the endgame solver has solved the position.
+     * It runs inside the search, so it should hand the values on and return quickly.
+     * @param depth plies fully searched, or empty squares solved
+     * @param move best move so far, square index
+     * @param score score of the move from the side to move
+     * @param nodes positions visited so far by this thread
+     */
+    void iterationFinished(int depth, int move, int score, long nodes);
+}
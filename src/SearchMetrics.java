@@ -0,0 +1,260 @@
+public class SearchMetrics {
+    public static final int CUTOFF_SLOTS = 16; // the last slot counts cutoffs by this move or any later one
+
+    private long searches;
+    private long iterations;
+    private long nodes;
+    private long tableProbes;
+    private long tableHits;
+    private long tableCutoffs;
+    private long tableCollisions;
+    private final long[] cutoffs = new long[CUTOFF_SLOTS];
+    private long endgameSolves;
+    private long endgameAborts;
+    private long endgameNodes;
+    private long endgameNanos;
+
+    /**
+     * Describes counters of what a search did: transposition table use, which move in the ordering
+     * caused each beta cutoff, and the work of the endgame solver.
+     * Each search thread counts into its own metrics with plain fields, so counting costs no more than an add;
+     * a search without metrics skips counting altogether.
+     * Reading the counters from another thread while the search runs may see slightly old values.
+     */
+    public SearchMetrics() {
+    }
+
+    void searchFinished(long searchNodes) {
+        searches++;
+        nodes += searchNodes;
+    }
+
+    void iterationFinished() {
+        iterations++;
+    }
+
+    /**
+     * count a probe of the transposition table
+     * @param hit true if the position was found
+     * @param collision true if it was not found but its bucket holds other positions
+     */
+    void tableProbed(boolean hit, boolean collision) {
+        tableProbes++;
+        if (hit) {
+            tableHits++;
+        } else if (collision) {
+            tableCollisions++;
+        }
+    }
+
+    void tableCutoff() {
+        tableCutoffs++;
+    }
+
+    /**
+     * count a beta cutoff
+     * @param index place of the move in the ordering, 0 for the first move searched
+     */
+    void cutoff(int index) {
+        cutoffs[Math.min(index, CUTOFF_SLOTS - 1)]++;
+    }
+
+    void endgameSolved(long solveNodes, long nanos, boolean aborted) {
+        endgameSolves++;
+        endgameNodes += solveNodes;
+        endgameNanos += nanos;
+        if (aborted) {
+            endgameAborts++;
+        }
+    }
+
+    /**
+     * add the counters of another search, such as a helper thread
+     * @param other metrics to add
+     */
+    public void add(SearchMetrics other) {
+        searches += other.searches;
+        iterations += other.iterations;
+        nodes += other.nodes;
+        tableProbes += other.tableProbes;
+        tableHits += other.tableHits;
+        tableCutoffs += other.tableCutoffs;
+        tableCollisions += other.tableCollisions;
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            cutoffs[i] += other.cutoffs[i];
+        }
+        endgameSolves += other.endgameSolves;
+        endgameAborts += other.endgameAborts;
+        endgameNodes += other.endgameNodes;
+        endgameNanos += other.endgameNanos;
+    }
+
+    /**
+     * take away the counters of an earlier snapshot of the same metrics, leaving what was counted since
+     * @param earlier snapshot taken before
+     */
+    public void subtract(SearchMetrics earlier) {
+        searches -= earlier.searches;
+        iterations -= earlier.iterations;
+        nodes -= earlier.nodes;
+        tableProbes -= earlier.tableProbes;
+        tableHits -= earlier.tableHits;
+        tableCutoffs -= earlier.tableCutoffs;
+        tableCollisions -= earlier.tableCollisions;
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            cutoffs[i] -= earlier.cutoffs[i];
+        }
+        endgameSolves -= earlier.endgameSolves;
+        endgameAborts -= earlier.endgameAborts;
+        endgameNodes -= earlier.endgameNodes;
+        endgameNanos -= earlier.endgameNanos;
+    }
+
+    /**
+     * set every counter back to 0
+     */
+    public void clear() {
+        searches = 0;
+        iterations = 0;
+        nodes = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        tableCutoffs = 0;
+        tableCollisions = 0;
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            cutoffs[i] = 0;
+        }
+        endgameSolves = 0;
+        endgameAborts = 0;
+        endgameNodes = 0;
+        endgameNanos = 0;
+    }
+
+    /**
+     * get a copy that no longer changes while the search goes on
+     * @return snapshot of the counters
+     */
+    public SearchMetrics snapshot() {
+        SearchMetrics copy = new SearchMetrics();
+        copy.add(this);
+        return copy;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * get number of finished iterative deepening iterations
+     * @return iterations
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * get positions visited, those of the endgame solver included
+     * @return nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTableProbes() {
+        return tableProbes;
+    }
+
+    public long getTableHits() {
+        return tableHits;
+    }
+
+    /**
+     * get hits whose stored bound was enough to return without searching
+     * @return table cutoffs
+     */
+    public long getTableCutoffs() {
+        return tableCutoffs;
+    }
+
+    /**
+     * get misses whose bucket was taken by other positions, so the position was lost or never fitted
+     * @return collisions
+     */
+    public long getTableCollisions() {
+        return tableCollisions;
+    }
+
+    /**
+     * get beta cutoffs caused by the move at one place of the ordering
+     * @param index 0 for the first move searched, CUTOFF_SLOTS - 1 counts that place and all later ones
+     * @return cutoffs
+     */
+    public long getCutoffs(int index) {
+        return cutoffs[index];
+    }
+
+    /**
+     * get every beta cutoff of the search
+     * @return cutoffs
+     */
+    public long getTotalCutoffs() {
+        long total = 0;
+        for (long count : cutoffs) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * get how often the first move searched caused the cutoff, the usual measure of move ordering
+     * @return 0..1, 0 when there were no cutoffs
+     */
+    public double getFirstMoveCutoffRate() {
+        long total = getTotalCutoffs();
+        return total == 0 ? 0 : (double) cutoffs[0] / total;
+    }
+
+    public long getEndgameSolves() {
+        return endgameSolves;
+    }
+
+    /**
+     * get solves given up because of time or a stop
+     * @return aborted solves
+     */
+    public long getEndgameAborts() {
+        return endgameAborts;
+    }
+
+    public long getEndgameNodes() {
+        return endgameNodes;
+    }
+
+    public long getEndgameMillis() {
+        return endgameNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%,d searches, %,d iterations, %,d nodes, table %,d probes %.1f%% hits"
+                        + " %.1f%% cutoffs %.1f%% collisions, %,d beta cutoffs %.1f%% by the first move",
+                searches, iterations, nodes, tableProbes, percent(tableHits, tableProbes), percent(tableCutoffs, tableProbes),
+                percent(tableCollisions, tableProbes), getTotalCutoffs(), 100 * getFirstMoveCutoffRate()));
+        text.append(" [");
+        long total = getTotalCutoffs();
+        for (int i = 0; i < CUTOFF_SLOTS; i++) {
+            text.append(i == 0 ? "" : " ").append(String.format("%.1f", percent(cutoffs[i], total)));
+        }
+        text.append("]");
+        if (endgameSolves > 0) {
+            text.append(String.format(", endgame %,d solves %,d aborted %,d nodes %,d ms", endgameSolves, endgameAborts,
+                    endgameNodes, getEndgameMillis()));
+        }
+        return text.toString();
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SearchPlayer extends ComputerPlayer {
+    private static final long PONDER_BUDGET_MILLIS = Long.MAX_VALUE / 2; // a ponder search runs until it is stopped
+
+    private ParallelSearch search;
+    private final long timeBudgetMillis;
+    private OpeningBook openingBook; // null when there is no book
+    private volatile SearchListener listener; // null when nobody follows the progress
+    private volatile boolean moveNowRequested; // set from another thread, cleared when the move is chosen
+
+    // pondering: after each move the position after the expected reply is searched until the reply is known
+    private boolean pondering;
+    private ExecutorService ponderThread; // made when pondering is first switched on
+    private Future<Integer> ponder; // running ponder search, null when not pondering
+    private long ponderOwn;
+    private long ponderOpp;
+    private int ponderPlayer;
+    private int ponderReply = Search.NO_MOVE;
+    private long ponderStart;
+    private volatile boolean ponderStopRequested;
+    private volatile boolean ponderRunning; // the search belongs to a ponder search, whose progress is not reported
+    private SearchMetrics ponderMetricsStart; // counters of the search when the ponder search started
+    private SearchMetrics moveMetrics; // counters of the searches that chose moves, null while metrics are off
+    private int ponderHits;
+    private int ponderMisses;
+
+    /**
+     * Describes a computer player that searches for its move
+     * @param board the game is played on
+     * @param timeBudgetMillis time allowed per move
+     * @param hashSizeMB memory for the transposition table
+     * @param threads number of search threads
+     */
+    public SearchPlayer(Board board, long timeBudgetMillis, int hashSizeMB, int threads) {
+        super(board);
+        this.timeBudgetMillis = timeBudgetMillis;
+        search = new ParallelSearch(timeBudgetMillis, new TranspositionTable(hashSizeMB), threads);
+        search.setListener((depth, move, score, nodes) -> {
+            // a request that came before the search started its clock is seen here, after the first iteration
+            if (moveNowRequested || ponderStopRequested) {
+                search.stop();
+            }
+            SearchListener current = listener;
+            if (current != null && !ponderRunning) {
+                current.iterationFinished(depth, move, score, nodes);
+            }
+        });
+    }
+
+    /**
+     * follow the progress of the search while a move is being chosen
+     * @param listener called on the thread running chooseMove, null for none
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * stop the running search and play the best move of its last finished depth
+     */
+    @Override
+    public void moveNow() {
+        moveNowRequested = true;
+        search.stop();
+    }
+
+    /**
+     * play book moves while the position is in the book
+     * @param openingBook book to check before searching, or null
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Keep searching on the opponent's time.
+     * After each move the search goes on with the position after the reply it expects;
+     * if the opponent plays that reply the search so far is used, otherwise it is dropped
+     * and only what it put in the transposition table is kept.
+     * @param pondering true to ponder, false stops any ponder search
+     */
+    public synchronized void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (pondering && ponderThread == null) {
+            ponderThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (!pondering) {
+            stopPondering();
+        }
+    }
+
+    /**
+     * stop a running ponder search, for example when the game ends or the expected reply can no longer come
+     */
+    public synchronized void stopPondering() {
+        finishPondering(0L, 0L, 0);
+    }
+
+    /**
+     * get the reply the running ponder search expects
+     * @return square index, or Search.NO_MOVE when not pondering
+     */
+    public synchronized int getPonderReply() {
+        return ponder == null ? Search.NO_MOVE : ponderReply;
+    }
+
+    /**
+     * get how often the opponent played the expected reply
+     * @return hits and misses
+     */
+    public synchronized int[] getPonderStatistics() {
+        return new int[]{ponderHits, ponderMisses};
+    }
+
+    /**
+     * Chooses a move with an alpha-beta search for the player whose valid moves are on the board.
+     * Positions in the opening book are answered from the book without searching.
+     * When the position is the one being pondered the ponder search goes on until the time budget,
+     * counted from when it started, is used up, so an opponent that thought longer is answered at once.
+     * Depth, score and nodes of the search that chose the move are left in getSearch() for the caller to show.
+     *
+     * @return The best move found as a Coordinate object.
+     */
+    @Override
+    public Coordinate chooseMove() {
+        BitBoard bitBoard = board.getBitBoard();
+        if (bitBoard == null) {
+            return super.chooseMove();
+        }
+        int player = board.getCurrentPlayer();
+        long own = bitBoard.getDiscs(player);
+        long opp = bitBoard.getDiscs(BitBoard.opponentOf(player));
+        int square;
+        try {
+            square = finishPondering(own, opp, player);
+            if (square == Search.NO_MOVE && openingBook != null) {
+                int bookMove = openingBook.lookup(bitBoard.getBlack(), bitBoard.getWhite(), player);
+                if (bookMove != OpeningBook.NO_MOVE && (bitBoard.getValidMoves(player) & (1L << bookMove)) != 0) {
+                    return board.getCoordinate(bookMove);
+                }
+            }
+            if (square == Search.NO_MOVE) {
+                SearchMetrics before = search.getMetrics();
+                square = search.findBestMove(own, opp, player);
+                countMetrics(before);
+            }
+        } finally {
+            moveNowRequested = false;
+        }
+        if (square == Search.NO_MOVE) {
+            return super.chooseMove();
+        }
+        startPondering(own, opp, player, square);
+        return board.getCoordinate(square);
+    }
+
+    /**
+     * Starts a ponder search on the position after a move and the reply the transposition table expects to it.
+     * Nothing is pondered when the table has no reply or when either side would have to pass.
+     */
+    private synchronized void startPondering(long own, long opp, int player, int square) {
+        if (!pondering) {
+            return;
+        }
+        long flips = BitBoard.computeFlips(square, own, opp);
+        long replyOwn = opp & ~flips;
+        long replyOpp = own | flips | (1L << square);
+        int opponent = BitBoard.opponentOf(player);
+        long replies = BitBoard.generateMoves(replyOwn, replyOpp);
+        long hash = opponent == BitBoard.BLACK ? Zobrist.hash(replyOwn, replyOpp, opponent) : Zobrist.hash(replyOpp, replyOwn, opponent);
+        long entry = search.getTable().probe(hash);
+        int reply = entry == TranspositionTable.MISS ? Search.NO_MOVE : TranspositionTable.moveOf(entry);
+        if (reply == Search.NO_MOVE || (replies & (1L << reply)) == 0) {
+            return;
+        }
+        long replyFlips = BitBoard.computeFlips(reply, replyOwn, replyOpp);
+        long nextOwn = replyOpp & ~replyFlips;
+        long nextOpp = replyOwn | replyFlips | (1L << reply);
+        if (BitBoard.generateMoves(nextOwn, nextOpp) == 0) {
+            return;
+        }
+        ponderOwn = nextOwn;
+        ponderOpp = nextOpp;
+        ponderPlayer = player;
+        ponderReply = reply;
+        ponderStart = System.currentTimeMillis();
+        ponderMetricsStart = search.getMetrics();
+        ponderRunning = true;
+        search.setTimeBudgetMillis(PONDER_BUDGET_MILLIS);
+        // the solver still needs a deadline, the one a hit would have, or it never gives way to the midgame search
+        search.setEndgameTimeBudgetMillis(timeBudgetMillis / 4 * 3);
+        ponder = ponderThread.submit(() -> search.findBestMove(nextOwn, nextOpp, player));
+    }
+
+    /**
+     * Ends the ponder search, if there is one.
+     * On the pondered position it is given the rest of the time budget and its move is returned,
+     * on any other position it is stopped and its move thrown away.
+     * The wait happens outside the lock, so stopPondering from another thread never waits for the time budget.
+     * @return move of the ponder search, or Search.NO_MOVE if it searched another position
+     */
+    private int finishPondering(long own, long opp, int player) {
+        Future<Integer> running;
+        boolean hit;
+        long remaining;
+        SearchMetrics metricsStart;
+        synchronized (this) {
+            if (ponder == null) {
+                return Search.NO_MOVE;
+            }
+            running = ponder;
+            ponder = null;
+            hit = own == ponderOwn && opp == ponderOpp && player == ponderPlayer;
+            if (hit) {
+                ponderHits++;
+            } else if (player != 0) {
+                ponderMisses++; // player 0 is stopPondering, not a move
+            }
+            remaining = ponderStart + timeBudgetMillis - System.currentTimeMillis();
+            metricsStart = ponderMetricsStart;
+        }
+        try {
+            if (hit && remaining > 0) {
+                try {
+                    return running.get(remaining, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // out of time, stop below
+                }
+            }
+            ponderStopRequested = true;
+            search.stop();
+            int move = running.get();
+            if (hit && search.getCompletedDepth() == 0) {
+                return Search.NO_MOVE; // stopped before anything was searched, chooseMove searches again
+            }
+            return hit ? move : Search.NO_MOVE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            search.stop();
+            throw new IllegalStateException("interrupted while finishing the ponder search", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ponder search failed", e.getCause());
+        } finally {
+            ponderStopRequested = false;
+            ponderRunning = false;
+            search.setTimeBudgetMillis(timeBudgetMillis);
+            search.setEndgameTimeBudgetMillis(0);
+            if (hit) {
+                countMetrics(metricsStart); // a ponder hit chose the move, a miss only warmed the table
+            }
+        }
+    }
+
+    /**
+     * add what the search counted since a snapshot to the counters of the moves
+     * @param before snapshot taken when the search started, null while metrics are off
+     */
+    private synchronized void countMetrics(SearchMetrics before) {
+        SearchMetrics after = search.getMetrics();
+        if (before == null || after == null) {
+            return;
+        }
+        after.subtract(before);
+        if (moveMetrics == null) {
+            moveMetrics = new SearchMetrics();
+        }
+        moveMetrics.add(after);
+    }
+
+    /**
+     * Get the counters of the searches that chose moves, switched on with getSearch().setMetricsEnabled.
+     * Ponder searches only count when the opponent played the expected reply.
+     * @return snapshot of the counters, null while metrics are off or before the first searched move
+     */
+    public synchronized SearchMetrics getMetrics() {
+        return moveMetrics == null ? null : moveMetrics.snapshot();
+    }
+
+    /**
+     * get the search used to choose moves
+     * @return search
+     */
+    public ParallelSearch getSearch() {
+        return search;
+    }
+}
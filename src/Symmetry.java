@@ -0,0 +1,128 @@
+public final class Symmetry {
+    // the 8 symmetries of the board: bit 0 mirrors x, bit 1 mirrors y, bit 2 then swaps x and y
+    public static final int IDENTITY = 0;
+    public static final int MIRROR_X = 1;
+    public static final int MIRROR_Y = 2;
+    public static final int ROTATE_180 = 3;
+    public static final int TRANSPOSE = 4;        // reflect in the a1-h8 diagonal
+    public static final int ROTATE_90 = 5;
+    public static final int ROTATE_270 = 6;
+    public static final int ANTI_TRANSPOSE = 7;   // reflect in the h1-a8 diagonal
+    public static final int COUNT = 8;
+
+    private Symmetry() {
+    }
+
+    /**
+     * get the square a square moves to
+     * @param square index 0..63
+     * @param symmetry 0..7
+     * @return transformed square index
+     */
+    public static int transformSquare(int square, int symmetry) {
+        int x = square & 7;
+        int y = square >>> 3;
+        if ((symmetry & MIRROR_X) != 0) {
+            x = 7 - x;
+        }
+        if ((symmetry & MIRROR_Y) != 0) {
+            y = 7 - y;
+        }
+        if ((symmetry & TRANSPOSE) != 0) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        return BitBoard.squareOf(x, y);
+    }
+
+    /**
+     * moves every disc of a bitboard with a few shifts and masks
+     * @param discs bitboard, a1 is bit 0
+     * @param symmetry 0..7
+     * @return transformed bitboard
+     */
+    public static long transform(long discs, int symmetry) {
+        if ((symmetry & MIRROR_X) != 0) {
+            discs = mirrorX(discs);
+        }
+        if ((symmetry & MIRROR_Y) != 0) {
+            discs = Long.reverseBytes(discs); // a row is a byte
+        }
+        if ((symmetry & TRANSPOSE) != 0) {
+            discs = transpose(discs);
+        }
+        return discs;
+    }
+
+    /**
+     * get the symmetry that undoes another
+     * @param symmetry 0..7
+     * @return symmetry with transform(transform(b, symmetry), inverse(symmetry)) == b
+     */
+    public static int inverse(int symmetry) {
+        // mirrors followed by a swap are undone by the swap followed by the mirrors, i.e. the other axis mirrored
+        if ((symmetry & TRANSPOSE) == 0) {
+            return symmetry;
+        }
+        return TRANSPOSE | (symmetry & MIRROR_X) << 1 | (symmetry & MIRROR_Y) >>> 1;
+    }
+
+    private static long mirrorX(long discs) {
+        discs = (discs >>> 1) & 0x5555555555555555L | (discs & 0x5555555555555555L) << 1;
+        discs = (discs >>> 2) & 0x3333333333333333L | (discs & 0x3333333333333333L) << 2;
+        return (discs >>> 4) & 0x0F0F0F0F0F0F0F0FL | (discs & 0x0F0F0F0F0F0F0F0FL) << 4;
+    }
+
+    private static long transpose(long discs) {
+        long t = 0x0F0F0F0F00000000L & (discs ^ (discs << 28));
+        discs ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (discs ^ (discs << 14));
+        discs ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (discs ^ (discs << 7));
+        return discs ^ t ^ (t >>> 7);
+    }
+
+    /**
+     * Picks one orientation to stand for all 8 orientations of a position:
+     * the one whose black discs, then white discs, are the smallest unsigned number.
+     * @param black discs of black
+     * @param white discs of white
+     * @return symmetry that turns the position into its canonical orientation
+     */
+    public static int canonicalSymmetry(long black, long white) {
+        int best = IDENTITY;
+        long bestBlack = black;
+        long bestWhite = white;
+        for (int symmetry = 1; symmetry < COUNT; symmetry++) {
+            long b = transform(black, symmetry);
+            int compare = Long.compareUnsigned(b, bestBlack);
+            if (compare < 0) {
+                best = symmetry;
+                bestBlack = b;
+                bestWhite = transform(white, symmetry);
+            } else if (compare == 0) {
+                long w = transform(white, symmetry);
+                if (Long.compareUnsigned(w, bestWhite) < 0) {
+                    best = symmetry;
+                    bestWhite = w;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Zobrist hash of the canonical orientation, the same for every orientation of the position.
+     * A move stored under this hash is in the canonical orientation,
+     * transformSquare(move, inverse(canonicalSymmetry(black, white))) turns it back.
+     * @param black discs of black
+     * @param white discs of white
+     * @param player 1 or 2, the player to move
+     * @return hash
+     */
+    public static long canonicalHash(long black, long white, int player) {
+        int symmetry = canonicalSymmetry(black, white);
+        return Zobrist.hash(transform(black, symmetry), transform(white, symmetry), player);
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Tournament {
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final EngineConfig first;
+    private final EngineConfig second;
+    private final int openingPlies;
+    private final long seed;
+
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicLong wins = new AtomicLong();
+    private final AtomicLong draws = new AtomicLong();
+    private final AtomicLong losses = new AtomicLong();
+    private final AtomicLong totalMoves = new AtomicLong();
+    // counters of the engines of every thread that has metrics switched on
+    private final List<SearchMetrics> firstMetrics = new CopyOnWriteArrayList<>();
+    private final List<SearchMetrics> secondMetrics = new CopyOnWriteArrayList<>();
+
+    private Writer results; // null when results are not written
+    private GameArchiveWriter archive; // null when games are not archived
+    private long lastFlushMillis;
+
+    /**
+     * Describes a match between two engines without any user interface.
+     * The engines swap colours every game and each game opens with a few random moves drawn from its own seed,
+     * so every game can be replayed on its own and the same seed always plays the same match.
+     * @param first engine whose wins, draws and losses are counted
+     * @param second its opponent
+     * @param openingPlies random moves played before the engines take over
+     * @param seed base of every game's seed
+     */
+    public Tournament(EngineConfig first, EngineConfig second, int openingPlies, long seed) {
+        this.first = first;
+        this.second = second;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+    }
+
+    /**
+     * stream one line per finished game to a writer
+     * @param results writer for the result lines, or null
+     */
+    public void setResults(Writer results) {
+        this.results = results;
+    }
+
+    /**
+     * archive every finished game, player 0 of the archive is the first engine and player 1 the second
+     * @param archive writer for the games, or null
+     */
+    public void setArchive(GameArchiveWriter archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * get the seed of a game, spread with the SplitMix64 finaliser so neighbouring games share nothing
+     * @param game index of the game
+     * @return seed
+     */
+    public long gameSeed(int game) {
+        long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays games on several threads until all are done, each thread with its own engines.
+     * @param games number of games
+     * @param threads number of games played at the same time
+     * @throws IOException if an engine can not be created or a result can not be written
+     */
+    public void play(int games, int threads) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tournament");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Void>> running = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            running.add(workers.submit(() -> {
+                playGames(games);
+                return null;
+            }));
+        }
+        workers.shutdown();
+
+        long start = System.currentTimeMillis();
+        try {
+            while (!workers.awaitTermination(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                printStatistics(System.currentTimeMillis() - start);
+            }
+            for (Future<Void> worker : running) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            workers.shutdownNow();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("tournament game failed", e.getCause());
+        }
+        if (results != null) {
+            results.flush();
+        }
+        printStatistics(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * takes games from the shared counter until none are left
+     */
+    private void playGames(int games) throws IOException {
+        Engine firstEngine = first.createEngine();
+        Engine secondEngine = second.createEngine();
+        addMetrics(firstEngine, firstMetrics);
+        addMetrics(secondEngine, secondMetrics);
+        BitBoard board = new BitBoard();
+        GameRecord record = new GameRecord();
+        for (int game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+            boolean firstIsBlack = game % 2 == 0;
+            playGame(game, firstIsBlack ? firstEngine : secondEngine, firstIsBlack ? secondEngine : firstEngine,
+                    board, record);
+            record.setPlayers(firstIsBlack ? 0 : 1, firstIsBlack ? 1 : 0);
+
+            int diff = board.count(BitBoard.BLACK) - board.count(BitBoard.WHITE);
+            int firstDiff = firstIsBlack ? diff : -diff;
+            if (firstDiff > 0) {
+                wins.incrementAndGet();
+            } else if (firstDiff < 0) {
+                losses.incrementAndGet();
+            } else {
+                draws.incrementAndGet();
+            }
+            totalMoves.addAndGet(record.getDiscsPlaced());
+            if (results != null || archive != null) {
+                writeResult(game, firstIsBlack, record);
+            }
+        }
+    }
+
+    private static void addMetrics(Engine engine, List<SearchMetrics> metrics) {
+        if (engine instanceof SearchEngine && ((SearchEngine) engine).getSearch().getMetrics() != null) {
+            metrics.add(((SearchEngine) engine).getSearch().getMetrics());
+        }
+    }
+
+    /**
+     * Plays one game from the start position.
+     * @param game index of the game, its seed drives the opening and any random engine
+     * @param black engine playing black
+     * @param white engine playing white
+     * @param board receives the final position
+     * @param record receives the seed, moves and result
+     */
+    public void playGame(int game, Engine black, Engine white, BitBoard board, GameRecord record) {
+        long gameSeed = gameSeed(game);
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        black.newGame(random.nextLong());
+        white.newGame(random.nextLong());
+
+        board.setDiscs(BitBoard.START_BLACK, BitBoard.START_WHITE);
+        record.clear();
+        record.setSeed(gameSeed);
+        int player = BitBoard.BLACK;
+        int plies = 0;
+        while (true) {
+            long own = board.getDiscs(player);
+            long opp = board.getDiscs(BitBoard.opponentOf(player));
+            long moves = BitBoard.generateMoves(own, opp);
+            if (moves == 0) {
+                if (BitBoard.generateMoves(opp, own) == 0) {
+                    record.setResult(board.count(BitBoard.BLACK), board.count(BitBoard.WHITE));
+                    return;
+                }
+                record.addPass();
+                player = BitBoard.opponentOf(player);
+                continue;
+            }
+            int move;
+            if (plies < openingPlies) {
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                move = Long.numberOfTrailingZeros(moves);
+            } else {
+                move = (player == BitBoard.BLACK ? black : white).chooseMove(own, opp, player);
+                if (move < 0 || (moves & (1L << move)) == 0) {
+                    throw new IllegalStateException("engine played invalid move " + move + " in game " + game);
+                }
+            }
+            board.play(move, player);
+            record.addMove(move, player);
+            plies++;
+            player = BitBoard.opponentOf(player);
+        }
+    }
+
+    /**
+     * appends a tab separated line: game, seed, colour of the first engine, black discs, white discs, moves,
+     * and the game to the archive
+     */
+    private void writeResult(int game, boolean firstIsBlack, GameRecord record) throws IOException {
+        String line = null;
+        if (results != null) {
+            line = game + "\t" + record.getSeed() + "\t" + (firstIsBlack ? "black" : "white") + "\t"
+                    + record.getBlackDiscs() + "\t" + record.getWhiteDiscs() + "\t" + record.getMoveText() + "\n";
+        }
+        synchronized (this) {
+            if (archive != null) {
+                archive.write(record);
+            }
+            if (results != null) {
+                results.write(line);
+                // flush now and then so the file follows the match without a system call per game
+                long now = System.currentTimeMillis();
+                if (now - lastFlushMillis >= FLUSH_INTERVAL_MILLIS) {
+                    results.flush();
+                    lastFlushMillis = now;
+                }
+            }
+        }
+    }
+
+    private void printStatistics(long elapsedMillis) {
+        long won = wins.get();
+        long drawn = draws.get();
+        long lost = losses.get();
+        long games = won + drawn + lost;
+        System.out.printf("%d games, %.1f games/sec, W/D/L %d/%d/%d (%.1f%%), %.1f moves per game%n", games,
+                games * 1000.0 / Math.max(1, elapsedMillis), won, drawn, lost,
+                100.0 * (won + drawn / 2.0) / Math.max(1, games), (double) totalMoves.get() / Math.max(1, games));
+        printMetrics("first", firstMetrics);
+        printMetrics("second", secondMetrics);
+    }
+
+    /**
+     * prints the counters of one engine added up over the threads, read while the games go on
+     */
+    private static void printMetrics(String name, List<SearchMetrics> metrics) {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        SearchMetrics total = new SearchMetrics();
+        for (SearchMetrics engine : metrics) {
+            total.add(engine);
+        }
+        System.out.println("  " + name + ": " + total);
+    }
+
+    /**
+     * Plays a match between two engines, for example "search:depth=4" against "random".
+     * Arguments: first engine, second engine, [games] [threads] [random opening plies] [seed] [results file or -]
+     * [game archive]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: Tournament <engine> <engine> [games] [threads] [opening plies] [seed] [results file or -] [archive]");
+            System.out.println("engine: random | search[:depth=6,time=0,hash=4,endgame=0,book=<file>,eval=<file>,metrics=0]"
+                    + " | mcts[:time=0,playouts=20000,rave=0,hash=4]");
+            return;
+        }
+        EngineConfig first = EngineConfig.parse(args[0]);
+        EngineConfig second = EngineConfig.parse(args[1]);
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int openingPlies = args.length > 4 ? Integer.parseInt(args[4]) : 6;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1L;
+
+        System.out.println(first + " against " + second + ", " + games + " games on " + threads + " threads");
+        Tournament tournament = new Tournament(first, second, openingPlies, seed);
+        BufferedWriter results = null;
+        GameArchiveWriter archive = null;
+        try {
+            if (args.length > 6 && !args[6].equals("-")) {
+                results = Files.newBufferedWriter(Paths.get(args[6]));
+                tournament.setResults(results);
+            }
+            if (args.length > 7) {
+                archive = GameArchiveWriter.create(Paths.get(args[7]), new String[]{first.toString(), second.toString()});
+                tournament.setArchive(archive);
+            }
+            tournament.play(games, threads);
+        } finally {
+            if (results != null) {
+                results.close();
+            }
+            if (archive != null) {
+                archive.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1; // score is at least this, search failed high
+    public static final int UPPER = 2; // score is at most this, search failed low
+    public static final long MISS = 0L;
+
+    private static final int BYTES_PER_BUCKET = 32; // two slots of key + data
+
+    // data word layout: score in the high 32 bits, then generation, valid bit, depth, bound and move
+    private static final long VALID = 1L << 24;
+    private static final int GENERATION_SHIFT = 25;
+    private static final int GENERATION_MASK = 0x7F;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * Describes a fixed-size hash table of searched positions.
+     * Every bucket holds a depth-preferred slot and an always-replace slot.
+     * Slots store the key xor the data, so search threads can share the table without locks:
+     * a slot torn by two threads writing at once no longer matches its key and reads as a miss.
+     * @param sizeMB memory to use, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int sizeMB) {
+        long buckets = Long.highestOneBit(Math.max(1L, (long) sizeMB * 1024 * 1024 / BYTES_PER_BUCKET));
+        buckets = Math.min(buckets, 1L << 29); // keep 2 * buckets inside an array index
+        keys = new long[(int) buckets * 2];
+        data = new long[(int) buckets * 2];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * get memory used by the table
+     * @return size in bytes
+     */
+    public long getSizeBytes() {
+        return (long) keys.length * 16;
+    }
+
+    /**
+     * mark entries of earlier searches as replaceable
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * remove every entry
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * look up a position
+     * @param hash of the position
+     * @return data word, or MISS
+     */
+    public long probe(long hash) {
+        int slot = ((int) hash & bucketMask) << 1;
+        long entry = data[slot];
+        if ((keys[slot] ^ entry) == hash && entry != MISS) {
+            return entry;
+        }
+        entry = data[slot + 1];
+        if ((keys[slot + 1] ^ entry) == hash && entry != MISS) {
+            return entry;
+        }
+        return MISS;
+    }
+
+    /**
+     * check if the bucket of a position holds anything, after a miss this means other positions took it
+     * @param hash of the position
+     * @return true if either slot of the bucket is in use
+     */
+    public boolean isBucketTaken(long hash) {
+        int slot = ((int) hash & bucketMask) << 1;
+        return data[slot] != MISS || data[slot + 1] != MISS;
+    }
+
+    /**
+     * store a searched position.
+     * The depth-preferred slot is only replaced by a search at least as deep, or when it is from an earlier search.
+     * @param hash of the position
+     * @param depth plies searched
+     * @param bound EXACT, LOWER or UPPER
+     * @param score search result
+     * @param move best move square, or -1
+     */
+    public void store(long hash, int depth, int bound, int score, int move) {
+        long entry = ((long) score << 32) | ((long) generation << GENERATION_SHIFT) | VALID
+                | ((long) (depth & 0xFF) << 16) | ((long) bound << 8) | (move & 0xFF);
+        int slot = ((int) hash & bucketMask) << 1;
+        long stored = data[slot];
+        if (stored == MISS || (keys[slot] ^ stored) == hash || depth >= depthOf(stored)
+                || ((int) (stored >>> GENERATION_SHIFT) & GENERATION_MASK) != generation) {
+            data[slot] = entry;
+            keys[slot] = hash ^ entry;
+        } else {
+            data[slot + 1] = entry;
+            keys[slot + 1] = hash ^ entry;
+        }
+    }
+
+    public static int scoreOf(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    public static int depthOf(long entry) {
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    public static int boundOf(long entry) {
+        return (int) (entry >>> 8) & 0x3;
+    }
+
+    /**
+     * get best move of an entry
+     * @param entry data word
+     * @return square index, or -1
+     */
+    public static int moveOf(long entry) {
+        int move = (int) entry & 0xFF;
+        return move == 0xFF ? -1 : move;
+    }
+}
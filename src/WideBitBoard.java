@@ -0,0 +1,387 @@
+import java.util.Random;
+
+public class WideBitBoard {
+    public static final int MAX_SIZE = 64; // a row has to fit in one long
+
+    private final int width;
+    private final int height;
+    private final long rowMask; // the columns of one row
+    private final long[] black; // one word per row, bit x of word y is the square y * width + x
+    private final long[] white;
+
+    // scratch rows of move generation, so generating moves allocates nothing
+    private long[] fill;
+    private long[] next;
+
+    /**
+     * Describes an empty board of any even size up to 64x64, stored as a word of bits per row.
+     * Move generation slides whole rows at once, so every square of a row is handled by one shift,
+     * the same idea as BitBoard spread over several words.
+     * Square index is y * width + x, so a 8x8 WideBitBoard numbers squares like a BitBoard.
+     * @param width number of columns, even, 2..64
+     * @param height number of rows, even, 2..64
+     */
+    public WideBitBoard(int width, int height) {
+        if (width < 2 || height < 2 || width > MAX_SIZE || height > MAX_SIZE || width % 2 != 0 || height % 2 != 0) {
+            throw new IllegalArgumentException("board must be an even size from 2x2 to 64x64, not " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        rowMask = width == 64 ? -1L : (1L << width) - 1;
+        black = new long[height];
+        white = new long[height];
+        fill = new long[height];
+        next = new long[height];
+    }
+
+    /**
+     * check if a board size can be held
+     * @param width number of columns
+     * @param height number of rows
+     * @return true for even sizes from 2x2 to 64x64
+     */
+    public static boolean supports(int width, int height) {
+        return width >= 2 && height >= 2 && width <= MAX_SIZE && height <= MAX_SIZE && width % 2 == 0 && height % 2 == 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * get the square index of a grid position
+     * @param x column
+     * @param y row
+     * @return index 0..width * height - 1
+     */
+    public int squareOf(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * get the row of discs of a player, bit x is column x
+     * @param player 1 - black, 2 - white
+     * @param y row
+     * @return word of the row
+     */
+    public long getRow(int player, int y) {
+        return player == BitBoard.BLACK ? black[y] : white[y];
+    }
+
+    /**
+     * get state of one square
+     * @param square index
+     * @return 0 - empty, 1 - black, 2 - white
+     */
+    public int getState(int square) {
+        int y = square / width;
+        long bit = 1L << (square - y * width);
+        if ((black[y] & bit) != 0) {
+            return BitBoard.BLACK;
+        }
+        return (white[y] & bit) != 0 ? BitBoard.WHITE : BitBoard.EMPTY;
+    }
+
+    /**
+     * Set new state for one square
+     * @param square index
+     * @param state 0 - empty, 1 - black, 2 - white
+     */
+    public void setState(int square, int state) {
+        int y = square / width;
+        long bit = 1L << (square - y * width);
+        black[y] &= ~bit;
+        white[y] &= ~bit;
+        if (state == BitBoard.BLACK) {
+            black[y] |= bit;
+        } else if (state == BitBoard.WHITE) {
+            white[y] |= bit;
+        }
+    }
+
+    /**
+     * remove every disc
+     */
+    public void clear() {
+        for (int y = 0; y < height; y++) {
+            black[y] = 0L;
+            white[y] = 0L;
+        }
+    }
+
+    /**
+     * put the four start discs in the middle, black on the top left to bottom right diagonal
+     */
+    public void restart() {
+        clear();
+        int x = width / 2;
+        int y = height / 2;
+        setState(squareOf(x - 1, y - 1), BitBoard.BLACK);
+        setState(squareOf(x, y), BitBoard.BLACK);
+        setState(squareOf(x, y - 1), BitBoard.WHITE);
+        setState(squareOf(x - 1, y), BitBoard.WHITE);
+    }
+
+    /**
+     * get number of discs a player has
+     * @param player 1 or 2
+     * @return disc count
+     */
+    public int count(int player) {
+        long[] discs = player == BitBoard.BLACK ? black : white;
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            count += Long.bitCount(discs[y]);
+        }
+        return count;
+    }
+
+    /**
+     * get number of empty squares
+     * @return empty count
+     */
+    public int countEmpty() {
+        return width * height - count(BitBoard.BLACK) - count(BitBoard.WHITE);
+    }
+
+    /**
+     * Finds every square the player could move to, one word per row.
+     * @param player 1 or 2
+     * @param moves filled with the valid moves, at least one word per row
+     * @return number of valid moves
+     */
+    public int getValidMoves(int player, long[] moves) {
+        long[] own = player == BitBoard.BLACK ? black : white;
+        long[] opp = player == BitBoard.BLACK ? white : black;
+        for (int y = 0; y < height; y++) {
+            moves[y] = 0L;
+        }
+        addMovesInDirection(own, opp, moves, 1, 0);
+        addMovesInDirection(own, opp, moves, -1, 0);
+        addMovesInDirection(own, opp, moves, 0, 1);
+        addMovesInDirection(own, opp, moves, 0, -1);
+        addMovesInDirection(own, opp, moves, 1, 1);
+        addMovesInDirection(own, opp, moves, -1, -1);
+        addMovesInDirection(own, opp, moves, 1, -1);
+        addMovesInDirection(own, opp, moves, -1, 1);
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            moves[y] &= rowMask & ~(own[y] | opp[y]);
+            count += Long.bitCount(moves[y]);
+        }
+        return count;
+    }
+
+    /**
+     * Slides own discs over runs of opponent discs one step at a time, every row at once,
+     * marking the squares just past a run. Stops as soon as no run is still growing,
+     * so the cost follows the longest run rather than the size of the board.
+     */
+    private void addMovesInDirection(long[] own, long[] opp, long[] moves, int dx, int dy) {
+        long[] runs = fill;
+        long[] grown = next;
+        // only rows first..last of runs hold runs, the rest is left over from earlier steps and never read
+        int first = height;
+        int last = -1;
+        for (int y = Math.max(0, dy); y < height + Math.min(0, dy); y++) {
+            runs[y] = shiftRow(own[y - dy], dx) & opp[y];
+            if (runs[y] != 0) {
+                first = Math.min(first, y);
+                last = y;
+            }
+        }
+        while (first <= last) {
+            int from = Math.max(0, first + dy);
+            int to = Math.min(height - 1, last + dy);
+            first = height;
+            last = -1;
+            for (int y = from; y <= to; y++) {
+                long shifted = shiftRow(runs[y - dy], dx);
+                moves[y] |= shifted;   // squares that are not empty are masked out by the caller
+                grown[y] = shifted & opp[y];
+                if (grown[y] != 0) {
+                    first = Math.min(first, y);
+                    last = y;
+                }
+            }
+            long[] swap = runs;
+            runs = grown;
+            grown = swap;
+        }
+    }
+
+    private long shiftRow(long row, int dx) {
+        if (dx > 0) {
+            return (row << 1) & rowMask;
+        }
+        return dx < 0 ? row >>> 1 : row;
+    }
+
+    /**
+     * get the discs that would be flipped if player moved to square
+     * @param square index
+     * @param player 1 or 2
+     * @param flips filled with the flipped discs, at least one word per row
+     * @return number of flipped discs, 0 if the move is not valid
+     */
+    public int getFlips(int square, int player, long[] flips) {
+        long[] own = player == BitBoard.BLACK ? black : white;
+        long[] opp = player == BitBoard.BLACK ? white : black;
+        for (int y = 0; y < height; y++) {
+            flips[y] = 0L;
+        }
+        int x = square % width;
+        int y = square / width;
+        return flipsInDirection(x, y, 1, 0, own, opp, flips)
+                + flipsInDirection(x, y, -1, 0, own, opp, flips)
+                + flipsInDirection(x, y, 0, 1, own, opp, flips)
+                + flipsInDirection(x, y, 0, -1, own, opp, flips)
+                + flipsInDirection(x, y, 1, 1, own, opp, flips)
+                + flipsInDirection(x, y, -1, -1, own, opp, flips)
+                + flipsInDirection(x, y, 1, -1, own, opp, flips)
+                + flipsInDirection(x, y, -1, 1, own, opp, flips);
+    }
+
+    /**
+     * marks the run of opponent discs from one square that ends on an own disc, a single move only touches a few rows
+     */
+    private int flipsInDirection(int x, int y, int dx, int dy, long[] own, long[] opp, long[] flips) {
+        int run = 0;
+        int cx = x + dx;
+        int cy = y + dy;
+        while (cx >= 0 && cy >= 0 && cx < width && cy < height && (opp[cy] & (1L << cx)) != 0) {
+            cx += dx;
+            cy += dy;
+            run++;
+        }
+        if (run == 0 || cx < 0 || cy < 0 || cx >= width || cy >= height || (own[cy] & (1L << cx)) == 0) {
+            return 0;
+        }
+        for (int i = 1; i <= run; i++) {
+            flips[y + i * dy] |= 1L << (x + i * dx);
+        }
+        return run;
+    }
+
+    /**
+     * places a disc for player and flips every captured disc
+     * @param square index
+     * @param player 1 or 2
+     * @param flips filled with the flipped discs, keep them to unplay the move
+     * @return number of flipped discs
+     */
+    public int play(int square, int player, long[] flips) {
+        int flipped = getFlips(square, player, flips);
+        long[] own = player == BitBoard.BLACK ? black : white;
+        long[] opp = player == BitBoard.BLACK ? white : black;
+        for (int y = 0; y < height; y++) {
+            own[y] |= flips[y];
+            opp[y] &= ~flips[y];
+        }
+        own[square / width] |= 1L << (square % width);
+        return flipped;
+    }
+
+    /**
+     * takes back a move made with play
+     * @param square index the disc was placed on
+     * @param flips discs play filled in
+     * @param player who made the move
+     */
+    public void unplay(int square, long[] flips, int player) {
+        long[] own = player == BitBoard.BLACK ? black : white;
+        long[] opp = player == BitBoard.BLACK ? white : black;
+        own[square / width] &= ~(1L << (square % width));
+        for (int y = 0; y < height; y++) {
+            own[y] &= ~flips[y];
+            opp[y] |= flips[y];
+        }
+    }
+
+    /**
+     * Plays random games and compares word-parallel move generation with trying every empty square,
+     * which is what Board did for sizes other than 8x8.
+     * Arguments: [width] [height] [seconds per measurement]
+     */
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : width;
+        long millis = (long) ((args.length > 2 ? Double.parseDouble(args[2]) : 3) * 1000);
+
+        for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+            for (boolean naive : new boolean[] {true, false}) {
+                WideBitBoard board = new WideBitBoard(width, height);
+                long[] moves = new long[height];
+                long[] flips = new long[height];
+                Random random = new Random(1);
+                long generated = 0;
+                long games = 0;
+                long start = System.nanoTime();
+                long end = start + millis * 1_000_000;
+                while (System.nanoTime() < end) {
+                    board.restart();
+                    int player = BitBoard.BLACK;
+                    boolean passed = false;
+                    while (true) {
+                        int count = naive ? board.getValidMovesBySquare(player, moves, flips) : board.getValidMoves(player, moves);
+                        generated++;
+                        if (count == 0) {
+                            if (passed) {
+                                break;
+                            }
+                            passed = true;
+                            player = BitBoard.opponentOf(player);
+                            continue;
+                        }
+                        passed = false;
+                        board.play(nthMove(moves, random.nextInt(count), width), player, flips);
+                        player = BitBoard.opponentOf(player);
+                    }
+                    games++;
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                if (round == 1) {
+                    System.out.printf("%dx%d %-14s %,12.0f move generations/sec %,8.1f games/sec%n", width, height,
+                            naive ? "every square" : "word parallel", generated / seconds, games / seconds);
+                }
+            }
+        }
+    }
+
+    /**
+     * the old way, asking every empty square for its flips
+     */
+    private int getValidMovesBySquare(int player, long[] moves, long[] flips) {
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            moves[y] = 0L;
+            long empty = ~(black[y] | white[y]) & rowMask;
+            for (; empty != 0; empty &= empty - 1) {
+                int x = Long.numberOfTrailingZeros(empty);
+                if (getFlips(squareOf(x, y), player, flips) != 0) {
+                    moves[y] |= 1L << x;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int nthMove(long[] moves, int n, int width) {
+        for (int y = 0; ; y++) {
+            long row = moves[y];
+            int inRow = Long.bitCount(row);
+            if (n < inRow) {
+                for (; n > 0; n--) {
+                    row &= row - 1;
+                }
+                return y * width + Long.numberOfTrailingZeros(row);
+            }
+            n -= inRow;
+        }
+    }
+}
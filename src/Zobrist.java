@@ -0,0 +1,75 @@
+import java.util.SplittableRandom;
+
+public class Zobrist {
+    // fixed seed so the same position hashes the same in every process
+    private static final long SEED = 0x0E7E11011AB5EEDL;
+
+    private static final long[] BLACK_KEYS = new long[64];
+    private static final long[] WHITE_KEYS = new long[64];
+    // a flipped disc always swaps colour, so one key per square covers both directions
+    private static final long[] FLIP_KEYS = new long[64];
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int square = 0; square < 64; square++) {
+            BLACK_KEYS[square] = random.nextLong();
+            WHITE_KEYS[square] = random.nextLong();
+            FLIP_KEYS[square] = BLACK_KEYS[square] ^ WHITE_KEYS[square];
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * get key for a disc on a square
+     * @param player 1 - black, 2 - white
+     * @param square index 0..63
+     * @return key
+     */
+    public static long key(int player, int square) {
+        return player == BitBoard.BLACK ? BLACK_KEYS[square] : WHITE_KEYS[square];
+    }
+
+    /**
+     * get key change for a disc that changes colour
+     * @param square index 0..63
+     * @return key
+     */
+    public static long flipKey(int square) {
+        return FLIP_KEYS[square];
+    }
+
+    /**
+     * get key change for every disc in flips changing colour
+     * @param flips mask of flipped discs
+     * @return key
+     */
+    public static long flipKeys(long flips) {
+        long key = 0L;
+        for (; flips != 0; flips &= flips - 1) {
+            key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+        }
+        return key;
+    }
+
+    /**
+     * hash of a position computed from scratch
+     * @param black mask of black discs
+     * @param white mask of white discs
+     * @param player 1 or 2, the player to move
+     * @return hash
+     */
+    public static long hash(long black, long white, int player) {
+        long hash = player == BitBoard.WHITE ? WHITE_TO_MOVE : 0L;
+        for (; black != 0; black &= black - 1) {
+            hash ^= BLACK_KEYS[Long.numberOfTrailingZeros(black)];
+        }
+        for (; white != 0; white &= white - 1) {
+            hash ^= WHITE_KEYS[Long.numberOfTrailingZeros(white)];
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,91 @@
+package vector;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels of BatchMoves on the incubating Vector API, one position per lane.
+ * Kept apart from the rest of the game because it only compiles and runs with the module added:
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d out src/*.java src/vector/*.java
+ * java --add-modules jdk.incubator.vector -cp out BatchMoves
+ * </pre>
+ * BatchMoves finds this class at run time and uses plain long code when it is missing.
+ * It uses nothing from the game's classes, the masks below are those of BitBoard.
+ */
+public final class VectorBatchMoves {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final long INNER_COLUMNS = 0x7E7E7E7E7E7E7E7EL; // BitBoard.INNER_COLUMNS
+
+    private VectorBatchMoves() {
+    }
+
+    /**
+     * get how many positions one instruction works on
+     * @return lanes of the preferred vector size
+     */
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * valid moves of count positions, the last partial vector is masked so any count works
+     */
+    public static void generateMoves(long[] own, long[] opp, long[] moves, int count) {
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            VectorMask<Long> live = SPECIES.indexInRange(i, count);
+            LongVector o = LongVector.fromArray(SPECIES, own, i, live);
+            LongVector p = LongVector.fromArray(SPECIES, opp, i, live);
+            LongVector inner = p.and(INNER_COLUMNS);
+            LongVector result = movesInDirection(o, inner, 1)
+                    .or(movesInDirection(o, p, 8))
+                    .or(movesInDirection(o, inner, 7))
+                    .or(movesInDirection(o, inner, 9));
+            result.and(o.or(p).not()).intoArray(moves, i, live);
+        }
+    }
+
+    private static LongVector movesInDirection(LongVector own, LongVector opp, int shift) {
+        LongVector forward = opp.and(own.lanewise(VectorOperators.LSHL, shift));
+        LongVector backward = opp.and(own.lanewise(VectorOperators.LSHR, shift));
+        for (int step = 0; step < 5; step++) {
+            forward = forward.or(opp.and(forward.lanewise(VectorOperators.LSHL, shift)));
+            backward = backward.or(opp.and(backward.lanewise(VectorOperators.LSHR, shift)));
+        }
+        return forward.lanewise(VectorOperators.LSHL, shift).or(backward.lanewise(VectorOperators.LSHR, shift));
+    }
+
+    /**
+     * discs flipped by one move in each of count positions, a move is given as the bit of its square
+     */
+    public static void computeFlips(long[] move, long[] own, long[] opp, long[] flips, int count) {
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            VectorMask<Long> live = SPECIES.indexInRange(i, count);
+            LongVector m = LongVector.fromArray(SPECIES, move, i, live);
+            LongVector o = LongVector.fromArray(SPECIES, own, i, live);
+            LongVector p = LongVector.fromArray(SPECIES, opp, i, live);
+            LongVector inner = p.and(INNER_COLUMNS);
+            flipsInDirection(m, o, inner, 1)
+                    .or(flipsInDirection(m, o, p, 8))
+                    .or(flipsInDirection(m, o, inner, 7))
+                    .or(flipsInDirection(m, o, inner, 9))
+                    .intoArray(flips, i, live);
+        }
+    }
+
+    private static LongVector flipsInDirection(LongVector move, LongVector own, LongVector opp, int shift) {
+        LongVector forward = opp.and(move.lanewise(VectorOperators.LSHL, shift));
+        LongVector backward = opp.and(move.lanewise(VectorOperators.LSHR, shift));
+        for (int step = 0; step < 5; step++) {
+            forward = forward.or(opp.and(forward.lanewise(VectorOperators.LSHL, shift)));
+            backward = backward.or(opp.and(backward.lanewise(VectorOperators.LSHR, shift)));
+        }
+        // a run only flips when an own disc closes it, lanes where none does keep zero
+        VectorMask<Long> forwardClosed = forward.lanewise(VectorOperators.LSHL, shift).and(own).compare(VectorOperators.NE, 0);
+        VectorMask<Long> backwardClosed = backward.lanewise(VectorOperators.LSHR, shift).and(own).compare(VectorOperators.NE, 0);
+        LongVector zero = LongVector.zero(SPECIES);
+        return zero.blend(forward, forwardClosed).or(zero.blend(backward, backwardClosed));
+    }
+}